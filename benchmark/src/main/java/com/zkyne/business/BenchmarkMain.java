@@ -0,0 +1,38 @@
+package com.zkyne.business;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * @className: BenchmarkMain
+ * @description: 基准测试入口,参数同JMH命令行,未指定-prof时默认启用GC profiler,同时输出CPU耗时与内存分配速率
+ * @author: zkyne
+ * @date: 2026/10/18 17:30
+ * @see <a href=""></a>
+ */
+public class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        if(commandLineOptions.shouldHelp()){
+            commandLineOptions.showHelp();
+            return;
+        }
+        ChainedOptionsBuilder optionsBuilder = new OptionsBuilder().parent(commandLineOptions);
+        if(commandLineOptions.getProfilers().isEmpty()){
+            optionsBuilder.addProfiler(GCProfiler.class);
+        }
+        Runner runner = new Runner(optionsBuilder.build());
+        if(commandLineOptions.shouldList()){
+            runner.list();
+            return;
+        }
+        runner.run();
+    }
+}
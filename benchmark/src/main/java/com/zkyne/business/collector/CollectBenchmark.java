@@ -0,0 +1,109 @@
+package com.zkyne.business.collector;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.zkyne.business.config.ExporterConfigOptions;
+import com.zkyne.business.config.ExporterConfigOptions.MetricConfigOptions;
+import io.prometheus.client.Collector.MetricFamilySamples;
+import io.prometheus.client.CollectorRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @className: CollectBenchmark
+ * @description: BusinessExporter.collect()的基准测试,由合成采集器按行数与label数量返回数据
+ * @author: zkyne
+ * @date: 2026/10/18 17:35
+ * @see <a href=""></a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CollectBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    @Param({"1", "4", "8"})
+    private int tags;
+
+    private BusinessExporter exporter;
+
+    @Setup
+    public void setup() {
+        Set<String> tagKeys = Sets.newLinkedHashSet();
+        for (int i = 0; i < this.tags; i++) {
+            tagKeys.add("tag" + i);
+        }
+        MetricConfigOptions metricConfig = MetricConfigOptions.builder()
+                .customCollectorEnabled(true)
+                .customCollector(SyntheticCollector.class)
+                .name("benchmark_metric")
+                .valueKey("value")
+                .tagKeys(tagKeys)
+                .build();
+        ExporterConfigOptions exporterConfigOptions = ExporterConfigOptions.builder()
+                .metrics(Lists.newArrayList(metricConfig))
+                .build();
+        this.exporter = BusinessExporter.builder()
+                .exporterConfigOptions(exporterConfigOptions)
+                .collector(new SyntheticCollector(this.rows, tagKeys))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        CollectorRegistry.defaultRegistry.unregister(this.exporter);
+        this.exporter.close();
+    }
+
+    @Benchmark
+    public List<MetricFamilySamples> collect() {
+        return this.exporter.collect();
+    }
+
+    /**
+     * 预先生成数据的采集器,排除数据源本身的开销
+     */
+    public static class SyntheticCollector implements ICollector {
+
+        private final List<Map<String, Object>> data;
+
+        public SyntheticCollector(int rows, Set<String> tagKeys) {
+            this.data = Lists.newArrayListWithCapacity(rows);
+            for (int i = 0; i < rows; i++) {
+                Map<String, Object> row = Maps.newHashMapWithExpectedSize(tagKeys.size() + 1);
+                int tagIndex = 0;
+                for (String tagKey : tagKeys) {
+                    row.put(tagKey, tagKey + "_" + (i >> (tagIndex++ * 2)) % 1000);
+                }
+                row.put("value", (long) i);
+                this.data.add(row);
+            }
+        }
+
+        @Override
+        public List<Map<String, Object>> collectData(String excuteSql) {
+            return this.data;
+        }
+    }
+}
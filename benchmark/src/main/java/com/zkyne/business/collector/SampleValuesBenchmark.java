@@ -0,0 +1,73 @@
+package com.zkyne.business.collector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @className: SampleValuesBenchmark
+ * @description: 源数据值转换为label值(bulidTagValues)与指标值(handleValue)的基准测试,覆盖常见的JDBC返回类型
+ * @author: zkyne
+ * @date: 2026/10/18 17:40
+ * @see <a href=""></a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleValuesBenchmark {
+
+    @Param({"string", "long", "double", "bigdecimal", "date", "timestamp"})
+    private String type;
+
+    private Object value;
+
+    @Setup
+    public void setup() {
+        switch (this.type) {
+            case "string":
+                this.value = "12345.678";
+                break;
+            case "long":
+                this.value = 1234567890L;
+                break;
+            case "double":
+                this.value = 12345.678D;
+                break;
+            case "bigdecimal":
+                this.value = new BigDecimal("12345.678");
+                break;
+            case "date":
+                this.value = new Date();
+                break;
+            default:
+                this.value = new Timestamp(System.currentTimeMillis());
+                break;
+        }
+    }
+
+    @Benchmark
+    public String tagValue() {
+        return SampleValues.toTagValue(this.value);
+    }
+
+    @Benchmark
+    public double value() {
+        return SampleValues.toValue(this.value);
+    }
+}
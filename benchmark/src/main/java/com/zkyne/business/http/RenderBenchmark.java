@@ -0,0 +1,87 @@
+package com.zkyne.business.http;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.Collector.MetricFamilySamples.Sample;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link TextFormat#write004} and the gzip stage of {@link HttpServer} at realistic payload sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+
+    @Param({"1000", "100000"})
+    private int samples;
+
+    @Param({"1", "6"})
+    private int compressionLevel;
+
+    private CollectorRegistry registry;
+    private byte[] rendered;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 20);
+
+    @Setup
+    public void setup() throws IOException {
+        final List<String> labelNames = Arrays.asList("region", "channel", "status");
+        final List<Collector.MetricFamilySamples.Sample> sampleList = new ArrayList<Sample>(samples);
+        for (int i = 0; i < samples; i++) {
+            sampleList.add(new Sample("business_orders", labelNames,
+                    Arrays.asList("region_" + (i % 50), "channel_" + (i / 50 % 40), "status_" + (i % 7)), i * 1.5D));
+        }
+        registry = new CollectorRegistry();
+        new Collector() {
+            @Override
+            public List<MetricFamilySamples> collect() {
+                return Collections.singletonList(new MetricFamilySamples("business_orders", Type.GAUGE, "help", sampleList));
+            }
+        }.register(registry);
+        rendered = write004();
+    }
+
+    @Benchmark
+    public int render() throws IOException {
+        return write004().length;
+    }
+
+    @Benchmark
+    public int gzip() throws IOException {
+        buffer.reset();
+        HttpServer.gzip(rendered, rendered.length, buffer, compressionLevel);
+        return buffer.size();
+    }
+
+    private byte[] write004() throws IOException {
+        buffer.reset();
+        OutputStreamWriter osw = new OutputStreamWriter(buffer, StandardCharsets.UTF_8);
+        TextFormat.write004(osw, registry.metricFamilySamples());
+        osw.flush();
+        return buffer.toByteArray();
+    }
+}
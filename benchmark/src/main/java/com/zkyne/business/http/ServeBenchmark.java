@@ -0,0 +1,142 @@
+package com.zkyne.business.http;
+
+import com.zkyne.business.config.ExporterConfigOptions.ExporterClientOptions;
+import io.prometheus.client.Collector;
+import io.prometheus.client.Collector.MetricFamilySamples.Sample;
+import io.prometheus.client.CollectorRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the built-in {@link HttpServer}: a few hundred concurrent scrapers against a small worker pool and
+ * request queue. Samples the latency of every scrape, so the report includes the p99 of scrapes under load, together
+ * with the number of requests answered 200 and 503 and the number of connections that failed without a response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(256)
+@Fork(1)
+public class ServeBenchmark {
+
+    @Param({"1000", "100000"})
+    private int samples;
+
+    @Param({"false", "true"})
+    private boolean renderCacheEnabled;
+
+    @Param({"2"})
+    private int httpThreads;
+
+    @Param({"4"})
+    private int httpQueueSize;
+
+    private HttpServer server;
+    private URL url;
+
+    /**
+     * Per-thread response counters, summed over all threads by JMH.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Responses {
+        public long ok;
+        public long unavailable;
+        public long dropped;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            ok = 0;
+            unavailable = 0;
+            dropped = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        final List<String> labelNames = Arrays.asList("region", "channel", "status");
+        final List<Sample> sampleList = new ArrayList<Sample>(samples);
+        for (int i = 0; i < samples; i++) {
+            sampleList.add(new Sample("business_orders", labelNames,
+                    Arrays.asList("region_" + (i % 50), "channel_" + (i / 50 % 40), "status_" + (i % 7)), i * 1.5D));
+        }
+        CollectorRegistry registry = new CollectorRegistry();
+        new Collector() {
+            @Override
+            public List<MetricFamilySamples> collect() {
+                return Collections.singletonList(new MetricFamilySamples("business_orders", Type.GAUGE, "help", sampleList));
+            }
+        }.register(registry);
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        ExporterClientOptions clientOptions = ExporterClientOptions.builder()
+                .clientPort(port)
+                .renderCacheEnabled(renderCacheEnabled)
+                .httpThreads(httpThreads)
+                .httpQueueSize(httpQueueSize)
+                .build();
+        server = new HttpServer(clientOptions, registry, () -> 0L, name -> true);
+        url = new URL("http://127.0.0.1:" + port + "/metrics");
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Benchmark
+    public int scrape(Responses responses) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        int status;
+        try {
+            status = connection.getResponseCode();
+        } catch (IOException e) {
+            // the connection failed without a response, the server must never do this under load
+            responses.dropped++;
+            return -1;
+        }
+        InputStream body = status == HttpURLConnection.HTTP_OK ? connection.getInputStream() : connection.getErrorStream();
+        if (body != null) {
+            byte[] buffer = new byte[8192];
+            while (body.read(buffer) != -1) {
+                // drain the body so the connection can be kept alive
+            }
+            body.close();
+        }
+        if (status == HttpURLConnection.HTTP_OK) {
+            responses.ok++;
+        } else if (status == HttpURLConnection.HTTP_UNAVAILABLE) {
+            responses.unavailable++;
+        }
+        return status;
+    }
+}
@@ -0,0 +1,86 @@
+package com.zkyne.business.utils;
+
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @className: BeanUtilsBenchmark
+ * @description: BeanUtils.objectsToMaps的基准测试
+ * @author: zkyne
+ * @date: 2026/10/18 17:45
+ * @see <a href=""></a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanUtilsBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private List<OrderBean> beans;
+
+    @Setup
+    public void setup() {
+        this.beans = Lists.newArrayListWithCapacity(this.size);
+        for (int i = 0; i < this.size; i++) {
+            OrderBean bean = new OrderBean();
+            bean.setUserName("user_" + i);
+            bean.setChannel("channel_" + (i % 10));
+            bean.setAmount(i * 10L);
+            this.beans.add(bean);
+        }
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> objectsToMaps() {
+        return BeanUtils.objectsToMaps(this.beans);
+    }
+
+    public static class OrderBean {
+        private String userName;
+        private String channel;
+        private Long amount;
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public void setUserName(String userName) {
+            this.userName = userName;
+        }
+
+        public String getChannel() {
+            return channel;
+        }
+
+        public void setChannel(String channel) {
+            this.channel = channel;
+        }
+
+        public Long getAmount() {
+            return amount;
+        }
+
+        public void setAmount(Long amount) {
+            this.amount = amount;
+        }
+    }
+}
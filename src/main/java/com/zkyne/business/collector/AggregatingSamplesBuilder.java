@@ -0,0 +1,106 @@
+package com.zkyne.business.collector;
+
+import com.google.common.collect.Lists;
+import com.zkyne.business.config.Aggregation;
+import io.prometheus.client.Collector.MetricFamilySamples;
+import io.prometheus.client.Collector.MetricFamilySamples.Sample;
+import io.prometheus.client.Collector.Type;
+
+import java.util.List;
+
+/**
+ * @className: AggregatingSamplesBuilder
+ * @description: 分组聚合的样本构建器,按label值组合分组,同一组的多行数据按配置的聚合方式合并为一个样本,
+ * 超出序列数上限后新出现的label组合聚合到溢出序列中
+ * @author: zkyne
+ * @date: 2026/10/18 18:15
+ * @see <a href=""></a>
+ */
+class AggregatingSamplesBuilder implements FamilySamplesBuilder {
+
+    private final String name;
+
+    private final Type type;
+
+    private final String help;
+
+    private final String sampleName;
+
+    private final List<String> tagKeys;
+
+    private final Aggregation aggregation;
+    /**
+     * 不含溢出序列的label组合数上限,为0时不限制
+     */
+    private final int limit;
+
+    private final LabelTupleTable table = new LabelTupleTable();
+
+    private int otherIndex = -1;
+
+    private long rows;
+
+    private long overflow;
+
+    AggregatingSamplesBuilder(MetricContext metricContext) {
+        this.name = metricContext.getName();
+        this.type = metricContext.type;
+        this.help = metricContext.config.getHelp();
+        this.sampleName = metricContext.sampleName;
+        this.tagKeys = metricContext.tagKeys;
+        this.aggregation = metricContext.config.getAggregation();
+        this.limit = metricContext.maxSeries > 0 && !this.tagKeys.isEmpty() ? metricContext.maxSeries - 1 : 0;
+    }
+
+    @Override
+    public void accept(List<String> tagValues, double value) {
+        this.rows++;
+        int index = this.table.indexOf(tagValues, this.limit);
+        if(index < 0){
+            this.overflow++;
+            if(this.otherIndex < 0){
+                this.otherIndex = this.table.indexOf(TopKSeriesSketch.otherTagValues(tagValues.size()), 0);
+            }
+            index = this.otherIndex;
+        }
+        this.table.add(index, value);
+    }
+
+    @Override
+    public long rows() {
+        return this.rows;
+    }
+
+    @Override
+    public long overflow() {
+        return this.overflow;
+    }
+
+    @Override
+    public MetricFamilySamples build() {
+        int size = this.table.size();
+        if(size == 0){
+            return null;
+        }
+        List<Sample> samples = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+            samples.add(new Sample(this.sampleName, this.tagKeys, this.table.tuple(i), value(i)));
+        }
+        return new MetricFamilySamples(this.name, this.type, this.help, samples);
+    }
+
+    private double value(int index) {
+        switch (this.aggregation) {
+            case COUNT:
+                return this.table.counts[index];
+            case MIN:
+                return this.table.mins[index];
+            case MAX:
+                return this.table.maxs[index];
+            case AVG:
+                return this.table.sums[index] / this.table.counts[index];
+            default:
+                return this.table.sums[index];
+        }
+    }
+}
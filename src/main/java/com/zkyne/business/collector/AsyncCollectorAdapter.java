@@ -0,0 +1,92 @@
+package com.zkyne.business.collector;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * @className: AsyncCollectorAdapter
+ * @description: 将同步采集器适配为异步采集器,同步的collectData在指定线程池中执行;
+ * 返回的future被取消或超时完成时中断仍在执行的查询
+ * @author: zkyne
+ * @date: 2026/10/18 19:45
+ * @see <a href=""></a>
+ */
+public class AsyncCollectorAdapter implements IAsyncCollector {
+
+    private final ICollector delegate;
+
+    private final ExecutorService executor;
+
+    public AsyncCollectorAdapter(ICollector delegate, ExecutorService executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    /**
+     * 同步采集器已经是异步采集器时直接返回,否则包装为适配器
+     */
+    public static IAsyncCollector of(ICollector collector, ExecutorService executor) {
+        if(collector instanceof IAsyncCollector){
+            return (IAsyncCollector) collector;
+        }
+        return new AsyncCollectorAdapter(collector, executor);
+    }
+
+    @Override
+    public CompletableFuture<List<Map<String, Object>>> collectDataAsync(String excuteSql) {
+        return collectDataAsync(excuteSql, null);
+    }
+
+    @Override
+    public CompletableFuture<List<Map<String, Object>>> collectDataAsync(String excuteSql, Object[] args) {
+        CompletableFuture<List<Map<String, Object>>> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = this.executor.submit(() -> {
+                try {
+                    result.complete(this.delegate.collectData(excuteSql, args));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        result.whenComplete((rows, e) -> {
+            if(e != null){
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public List<Map<String, Object>> collectData(String excuteSql) {
+        return this.delegate.collectData(excuteSql);
+    }
+
+    @Override
+    public List<Map<String, Object>> collectData(String excuteSql, Object[] args) {
+        return this.delegate.collectData(excuteSql, args);
+    }
+
+    @Override
+    public boolean isBoundParametersSupported() {
+        return this.delegate.isBoundParametersSupported();
+    }
+
+    @Override
+    public void init() {
+        this.delegate.init();
+    }
+
+    @Override
+    public void close() {
+        this.delegate.close();
+    }
+}
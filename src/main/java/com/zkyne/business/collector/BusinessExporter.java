@@ -1,24 +1,52 @@
 package com.zkyne.business.collector;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.zkyne.business.config.Aggregation;
 import com.zkyne.business.config.ExporterConfigOptions;
+import com.zkyne.business.config.ExporterConfigOptions.DatasourceOptions;
 import com.zkyne.business.config.ExporterConfigOptions.ExporterClientOptions;
 import com.zkyne.business.config.ExporterConfigOptions.MetricConfigOptions;
+import com.zkyne.business.config.ExporterConfigOptions.PrometheusOptions;
+import com.zkyne.business.config.MetricType;
 import com.zkyne.business.http.HttpServer;
 import io.prometheus.client.Collector;
-import io.prometheus.client.Collector.MetricFamilySamples.Sample;
 import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 
 import java.io.IOException;
-import java.lang.reflect.Constructor;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import java.net.InetAddress;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Date;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * @className: BusinessExporter
@@ -27,62 +55,107 @@ import java.util.Map;
  * @date: 2020/11/18 10:22
  * @see <a href=""></a>
  */
-public class BusinessExporter extends Collector {
+public class BusinessExporter extends Collector implements Collector.Describable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BusinessExporter.class);
 
     private final ExporterConfigOptions exporterConfigOptions;
     private final JdbcTemplate jdbcTemplate;
+    /**
+     * 命名数据源的JdbcTemplate,key为数据源名称
+     */
+    private final Map<String, JdbcTemplate> jdbcTemplates;
+    private final CollectorFactory collectorFactory;
+    /**
+     * 预先构建的采集器实例,key为采集器类型,如spring容器中的bean
+     */
+    private final Map<Class<? extends ICollector>, ICollector> collectors;
     private static volatile HttpServer httpServer;
+    /**
+     * 指标数据版本,每次采集产生新数据时递增,内置http服务据此判断是否需要重新渲染
+     */
+    private static final AtomicLong DATA_VERSION = new AtomicLong();
+    /**
+     * 已注册的exporter,其当前生效指标的样本名称只在数据版本变化时才会变化,内置http服务的渲染缓存只缓存这部分指标,其余指标每次拉取时渲染
+     */
+    private static final Set<BusinessExporter> EXPORTERS = ConcurrentHashMap.newKeySet();
+    /**
+     * 当前生效的、已绑定好采集器的指标上下文,不可变列表,热加载时整体替换,每次拉取只读取一次
+     */
+    private volatile MetricContexts metricContexts = MetricContexts.EMPTY;
+    /**
+     * 由exporter通过采集器工厂创建的采集器,key为采集器类型与数据源,exporter关闭时负责调用其close
+     */
+    private final Map<List<Object>, ICollector> ownedCollectors = new HashMap<>();
+    /**
+     * 热加载后不再使用、等待延迟关闭的采集器,exporter关闭时一并关闭
+     */
+    private final List<ICollector> retiredCollectors = Lists.newArrayList();
+    private ScheduledExecutorService refreshScheduler;
+    /**
+     * 后台定时采集任务,热加载时全部取消后按新的指标重新调度
+     */
+    private final List<ScheduledFuture<?>> refreshTasks = Lists.newArrayList();
+    private ExecutorService collectExecutor;
+    /**
+     * 各命名数据源的隔离舱,key为数据源名称
+     */
+    private final Map<String, DatasourceBulkhead> bulkheads = new HashMap<>();
+    /**
+     * 异步采集的超时计时器,没有异步采集器时为null
+     */
+    private volatile ScheduledExecutorService timeoutScheduler;
+    private ExporterMetrics exporterMetrics;
+    /**
+     * exporter注册到的registry,热加载新增指标名称时需要重新注册
+     */
+    private volatile CollectorRegistry registry;
+    /**
+     * 热加载的指标定义文件,未配置metricsFile时为null
+     */
+    private MetricDefinitionsFile metricDefinitionsFile;
+    /**
+     * 检查指标定义文件及延迟关闭热加载后不再使用的采集器
+     */
+    private ScheduledExecutorService reloadScheduler;
+    /**
+     * 快照持久化,未配置snapshotFile时为null
+     */
+    private SnapshotStore snapshotStore;
+    private ScheduledExecutorService snapshotScheduler;
+    /**
+     * 最近一次持久化时的数据版本,数据版本未变化时不重复写文件
+     */
+    private volatile long persistedVersion = -1L;
+    /**
+     * prometheus采集配置同步,未开启syncConfigToServerEnabled时为null
+     */
+    private ScrapeConfigSync scrapeConfigSync;
+    private ScheduledExecutorService syncScheduler;
 
     @Override
     public <T extends Collector> T register(CollectorRegistry registry) {
         if(this.exporterConfigOptions.isBuiltInHttpEnabled()){
             BusinessExporter.initHttpServer(this.exporterConfigOptions.getClient());
         }
+        this.exporterMetrics = ExporterMetrics.registerTo(registry);
+        this.exporterMetrics.add(this.metricContexts);
+        this.registry = registry;
+        EXPORTERS.add(this);
         return super.register(registry);
     }
 
     private double handleValue(Map<String, Object> data, String valueKey) {
-        double value = 0.0D;
-        if(valueKey != null && !"".equals(valueKey)){
-            Object valueObj = data.get(valueKey);
-            if(valueObj != null){
-                String valueStr;
-                if(valueObj instanceof Date){
-                    Date date = (Date) valueObj;
-                    valueStr = date.getTime() + "";
-                }else{
-                    valueStr = valueObj.toString();
-                }
-                value = Double.parseDouble(valueStr);
-            }
-        }else{
-            value = 1.0D;
+        if(valueKey == null || "".equals(valueKey)){
+            return 1.0D;
         }
-        return value;
+        return SampleValues.toValue(data.get(valueKey));
     }
 
     private List<String> bulidTagValues(Map<String, Object> data, List<String> tagKeys) {
-        List<String> tagValues = Lists.newArrayList();
-        if(tagKeys == null || tagKeys.isEmpty()){
-            return tagValues;
-        }
+        List<String> tagValues = Lists.newArrayListWithCapacity(tagKeys.size());
         for (String tagKey : tagKeys) {
-            Object tagValueObj = data.get(tagKey);
-            String tagValue;
-            if(tagValueObj != null){
-                if(tagValueObj instanceof Date){
-                    Date date = (Date) tagValueObj;
-                    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-                    LocalDateTime dateTime = LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
-                    tagValue = dateTime.format(formatter);
-                }else{
-                    tagValue = tagValueObj.toString();
-                }
-            }else{
-                tagValue = "";
-            }
-
-            tagValues.add(tagValue);
+            tagValues.add(SampleValues.toTagValue(data.get(tagKey)));
         }
         return tagValues;
     }
@@ -91,67 +164,940 @@ public class BusinessExporter extends Collector {
         if(exporterClientOptions == null){
             throw new RuntimeException("Built in http config error");
         }
+        if(exporterClientOptions.getCompressionLevel() < -1 || exporterClientOptions.getCompressionLevel() > 9){
+            throw new RuntimeException("Built in http config error, the compressionLevel must be between -1 and 9");
+        }
+        if(exporterClientOptions.getHttpThreads() <= 0 || exporterClientOptions.getHttpQueueSize() <= 0){
+            throw new RuntimeException("Built in http config error, the httpThreads and httpQueueSize must be greater than 0");
+        }
         if (BusinessExporter.httpServer == null) {
             synchronized (BusinessExporter.class) {
                 if (BusinessExporter.httpServer == null) {
                     try {
-                        BusinessExporter.httpServer = new HttpServer(exporterClientOptions.getClientPort(), exporterClientOptions.getRequestUri());
+                        BusinessExporter.httpServer = new HttpServer(exporterClientOptions, CollectorRegistry.defaultRegistry, DATA_VERSION::get, BusinessExporter::isVersionedName);
                     } catch (IOException e) {
-                        throw new RuntimeException();
+                        throw new RuntimeException("Built in http config error, start http server error, error message " + e.getMessage(), e);
                     }
                 }
             }
         }
     }
 
+    @Override
+    public List<MetricFamilySamples> describe() {
+        return describe(this.metricContexts);
+    }
+
+    private static List<MetricFamilySamples> describe(List<MetricContext> metricContexts) {
+        List<MetricFamilySamples> familySamples = Lists.newArrayList();
+        for (MetricContext metricContext : metricContexts) {
+            familySamples.add(metricContext.describe());
+        }
+        return familySamples;
+    }
+
     @Override
     public List<MetricFamilySamples> collect() {
+        MetricContexts metricContexts = this.metricContexts;
+        return collectMetrics(metricContexts, metricContexts);
+    }
+
+    /**
+     * 只采集名称满足过滤条件的指标,未被请求的指标不会执行查询
+     */
+    @Override
+    public List<MetricFamilySamples> collect(Predicate<String> sampleNameFilter) {
+        if(sampleNameFilter == null){
+            return collect();
+        }
+        List<MetricContext> matchedContexts = Lists.newArrayList();
+        MetricContexts metricContexts = this.metricContexts;
+        for (MetricContext metricContext : metricContexts) {
+            if(metricContext.matches(sampleNameFilter)){
+                matchedContexts.add(metricContext);
+            }
+        }
         List<MetricFamilySamples> familySamples = Lists.newArrayList();
-        if(this.exporterConfigOptions.getMetrics() == null){
-            return familySamples;
+        for (MetricFamilySamples metricFamilySamples : collectMetrics(matchedContexts, metricContexts)) {
+            MetricFamilySamples filtered = metricFamilySamples.filter(sampleNameFilter);
+            if(filtered != null){
+                familySamples.add(filtered);
+            }
         }
-        Collection<MetricConfigOptions> metricConfigOptions = this.exporterConfigOptions.getMetrics().values();
-        if(metricConfigOptions.isEmpty()){
+        return familySamples;
+    }
+
+    private List<MetricFamilySamples> collectMetrics(List<MetricContext> metricContexts, MetricContexts bound) {
+        List<MetricFamilySamples> familySamples = Lists.newArrayList();
+        if(metricContexts.isEmpty()){
             return familySamples;
         }
+        CollectCycle cycle = new CollectCycle(metricContexts, bound);
+        long startTime = cycle.startTime;
+        Map<MetricContext, Future<MetricFamilySamples>> futures = submitMetrics(metricContexts, cycle);
         try{
-            for (MetricConfigOptions metricConfig : metricConfigOptions) {
-                ICollector collector = null;
-                if(!metricConfig.isCustomCollectorEnabled()){
-                    Constructor<? extends ICollector> constructor =  metricConfig.getCustomCollector().getDeclaredConstructor(JdbcTemplate.class);
-                    //设置允许访问，防止private修饰的构造方法
-                    constructor.setAccessible(true);
-                    collector = constructor.newInstance(this.jdbcTemplate);
+            for (MetricContext metricContext : metricContexts) {
+                MetricFamilySamples metricFamilySamples;
+                if(metricContext.config.getRefreshInterval() > 0){
+                    MetricSnapshot snapshot = metricContext.snapshot;
+                    metricFamilySamples = snapshot == null ? null : snapshot.familySamples;
+                }else if(futures.containsKey(metricContext)){
+                    metricFamilySamples = awaitMetric(metricContext, futures.get(metricContext), startTime);
                 }else{
-                    Constructor<? extends ICollector> constructor =  metricConfig.getCustomCollector().getDeclaredConstructor();
-                    //设置允许访问，防止private修饰的构造方法
-                    constructor.setAccessible(true);
-                    collector = constructor.newInstance();
+                    metricFamilySamples = collectShared(metricContext, cycle);
+                }
+                if(metricFamilySamples != null){
+                    familySamples.add(metricFamilySamples);
                 }
-                List<Map<String, Object>> originData = collector.collectData(metricConfig.getExcuteSql());
-                if (originData == null || originData.isEmpty()) {
+            }
+            limitSeries(familySamples);
+        }catch (Exception e){
+            for (Future<MetricFamilySamples> future : futures.values()) {
+                future.cancel(true);
+            }
+            throw new RuntimeException("Exporter collect error, error message " + e.getMessage(), e);
+        }
+        return familySamples;
+    }
+
+    /**
+     * 全局序列数限制:按指标顺序累计序列数,超出全局maxSeries的部分合并到溢出序列,预算用尽后的指标不再返回;
+     * 直方图与摘要的样本无法按值合并,超出时整个指标不再返回
+     */
+    private void limitSeries(List<MetricFamilySamples> familySamples) {
+        int maxSeries = this.exporterConfigOptions.getMaxSeries();
+        if(maxSeries <= 0){
+            return;
+        }
+        int remaining = maxSeries;
+        for (int i = 0; i < familySamples.size(); i++) {
+            MetricFamilySamples metricFamilySamples = familySamples.get(i);
+            int series = metricFamilySamples.samples.size();
+            if(series > remaining){
+                MetricFamilySamples limited = metricFamilySamples.type == Type.HISTOGRAM || metricFamilySamples.type == Type.SUMMARY
+                        ? null : TopKSeriesSketch.limit(metricFamilySamples, remaining);
+                int limitedSeries = limited == null ? 0 : limited.samples.size();
+                ExporterMetrics.observeOverflow(metricFamilySamples.name, series - limitedSeries);
+                if(limited == null){
+                    familySamples.remove(i--);
                     continue;
                 }
-                List<Sample> samples = Lists.newArrayList();
-                for (Map<String, Object> data : originData) {
-                    List<String> tagValues = bulidTagValues(data, metricConfig.getTagKeys());
-                    double value = handleValue(data, metricConfig.getValueKey());
-                    Sample sample = new Sample(metricConfig.getName(), metricConfig.getTagKeys(), tagValues, value);
-                    samples.add(sample);
+                familySamples.set(i, limited);
+                series = limitedSeries;
+            }
+            remaining -= series;
+        }
+    }
+
+    /**
+     * 将需要同步采集的指标提交到采集线程池:异步采集器的指标直接发起异步采集,不占用线程;命名数据源的指标提交到该数据源的线程池,
+     * 其余指标在启用并行采集时提交到公共采集线程池;线程池队列已满时该指标直接返回最近一次成功的快照
+     */
+    private Map<MetricContext, Future<MetricFamilySamples>> submitMetrics(List<MetricContext> metricContexts, CollectCycle cycle) {
+        Map<MetricContext, Future<MetricFamilySamples>> futures = new IdentityHashMap<>();
+        for (MetricContext metricContext : metricContexts) {
+            if(metricContext.config.getRefreshInterval() > 0){
+                continue;
+            }
+            if(metricContext.collector instanceof IAsyncCollector){
+                futures.put(metricContext, collectAsync(metricContext, cycle));
+                continue;
+            }
+            ExecutorService executor = metricContext.bulkhead != null ? metricContext.bulkhead.executor : this.collectExecutor;
+            if(executor == null){
+                continue;
+            }
+            try {
+                futures.put(metricContext, executor.submit(() -> collectShared(metricContext, cycle)));
+            } catch (RejectedExecutionException e) {
+                metricContext.stale = true;
+                LOGGER.warn("Exporter collect metric {} rejected, the collect queue is full, serve last good snapshot", metricContext.getName());
+                futures.put(metricContext, CompletableFuture.completedFuture(metricContext.lastGoodSamples()));
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * 等待并行采集结果,超过指标超时或整体超时时取消该指标的采集并返回最近一次成功的结果;两者均为0时一直等待
+     */
+    private MetricFamilySamples awaitMetric(MetricContext metricContext, Future<MetricFamilySamples> future, long startTime) throws Exception {
+        MetricConfigOptions metricConfig = metricContext.config;
+        long timeout = collectTimeout(metricContext);
+        try {
+            if(timeout <= 0){
+                return future.get();
+            }
+            return future.get(Math.max(0L, startTime + timeout - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            LOGGER.warn("Exporter collect metric {} timeout, elapsed {}ms", metricConfig.getName(), System.currentTimeMillis() - startTime);
+            return metricContext.lastGoodSamples();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * 合并并发的采集请求:同一指标已有采集在进行时等待并共享其结果,等待超过该指标的采集超时时返回最近一次成功的结果;
+     * 配置了maxStaleness时直接复用该时间内完成的采集结果
+     */
+    private MetricFamilySamples collectShared(MetricContext metricContext, CollectCycle cycle) throws Exception {
+        long maxStaleness = this.exporterConfigOptions.getMaxStaleness();
+        while (true) {
+            MetricSnapshot snapshot = metricContext.snapshot;
+            if(snapshot != null && snapshot.isFresh(System.currentTimeMillis(), maxStaleness)){
+                return snapshot.familySamples;
+            }
+            CompletableFuture<MetricFamilySamples> running = metricContext.inflight.get();
+            if(running != null){
+                return awaitRunning(metricContext, running, cycle.startTime);
+            }
+            CompletableFuture<MetricFamilySamples> leader = new CompletableFuture<>();
+            if(!metricContext.inflight.compareAndSet(null, leader)){
+                continue;
+            }
+            Throwable failure = null;
+            MetricFamilySamples metricFamilySamples = null;
+            try {
+                metricFamilySamples = collectGuarded(metricContext, cycle);
+                return metricFamilySamples;
+            } catch (Throwable e) {
+                failure = e;
+                throw e;
+            } finally {
+                metricContext.inflight.set(null);
+                if(failure != null){
+                    leader.completeExceptionally(failure);
+                }else{
+                    leader.complete(metricFamilySamples);
                 }
-                MetricFamilySamples metricFamilySamples = new MetricFamilySamples(metricConfig.getName(), Type.GAUGE, metricConfig.getHelp(), samples);
-                familySamples.add(metricFamilySamples);
             }
-        }catch (Exception e){
-            throw new RuntimeException("Exporter collect error, error message" + e.getMessage());
+        }
+    }
+
+    /**
+     * 等待其他线程进行中的采集,超过该指标的采集超时时不再等待,返回最近一次成功的结果
+     */
+    private MetricFamilySamples awaitRunning(MetricContext metricContext, CompletableFuture<MetricFamilySamples> running, long startTime) throws Exception {
+        long timeout = collectTimeout(metricContext);
+        try {
+            if(timeout <= 0){
+                return running.get();
+            }
+            return running.get(Math.max(0L, startTime + timeout - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.warn("Exporter collect metric {} timeout waiting for the running collection, serve last good snapshot", metricContext.getName());
+            return metricContext.lastGoodSamples();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * 隔离单个指标的采集失败:熔断打开时不执行查询,采集失败时记录熔断并返回最近一次成功的结果,
+     * 此时该指标标记为过期,不影响其他指标
+     */
+    private MetricFamilySamples collectGuarded(MetricContext metricContext, CollectCycle cycle) {
+        if(!metricContext.circuitBreaker.allowRequest(System.currentTimeMillis())){
+            metricContext.stale = true;
+            return metricContext.lastGoodSamples();
+        }
+        long startNanos = System.nanoTime();
+        try {
+            return onCollected(metricContext, collectMetric(metricContext, cycle));
+        } catch (Exception e) {
+            return onCollectFailed(metricContext, e, startNanos);
+        }
+    }
+
+    /**
+     * 采集成功:记录熔断成功并替换快照
+     */
+    private MetricFamilySamples onCollected(MetricContext metricContext, MetricFamilySamples metricFamilySamples) {
+        metricContext.circuitBreaker.onSuccess();
+        metricContext.snapshot = new MetricSnapshot(metricFamilySamples, System.currentTimeMillis());
+        metricContext.stale = false;
+        DATA_VERSION.incrementAndGet();
+        return metricFamilySamples;
+    }
+
+    /**
+     * 采集失败:记录熔断失败并返回最近一次成功的结果
+     */
+    private MetricFamilySamples onCollectFailed(MetricContext metricContext, Throwable e, long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        metricContext.observeCost(elapsedNanos);
+        ExporterMetrics.observeError(metricContext.getName(), elapsedNanos);
+        metricContext.circuitBreaker.onFailure(System.currentTimeMillis());
+        metricContext.stale = true;
+        LOGGER.warn("Exporter collect metric {} error, serve last good snapshot, error message {}", metricContext.getName(), e.getMessage(), e);
+        return metricContext.lastGoodSamples();
+    }
+
+    /**
+     * 异步采集器的指标:合并并发请求、熔断与快照的处理与同步采集一致,但不占用线程等待查询,采集失败或超时时返回最近一次成功的结果;
+     * 返回的是结果的副本,调用方等待超时后取消它不影响共享该采集的其他请求
+     */
+    private CompletableFuture<MetricFamilySamples> collectAsync(MetricContext metricContext, CollectCycle cycle) {
+        long maxStaleness = this.exporterConfigOptions.getMaxStaleness();
+        while (true) {
+            MetricSnapshot snapshot = metricContext.snapshot;
+            if(snapshot != null && snapshot.isFresh(System.currentTimeMillis(), maxStaleness)){
+                return CompletableFuture.completedFuture(snapshot.familySamples);
+            }
+            CompletableFuture<MetricFamilySamples> running = metricContext.inflight.get();
+            if(running != null){
+                return running.thenApply(Function.identity());
+            }
+            CompletableFuture<MetricFamilySamples> leader = new CompletableFuture<>();
+            if(!metricContext.inflight.compareAndSet(null, leader)){
+                continue;
+            }
+            if(!metricContext.circuitBreaker.allowRequest(System.currentTimeMillis())){
+                metricContext.stale = true;
+                metricContext.inflight.set(null);
+                leader.complete(metricContext.lastGoodSamples());
+                return leader.thenApply(Function.identity());
+            }
+            long startNanos = System.nanoTime();
+            CompletableFuture<MetricFamilySamples> query;
+            try {
+                query = queryAsync(metricContext, cycle);
+            } catch (Throwable e) {
+                query = new CompletableFuture<>();
+                query.completeExceptionally(e);
+            }
+            query.whenComplete((metricFamilySamples, e) -> {
+                MetricFamilySamples result = e == null ? onCollected(metricContext, metricFamilySamples)
+                        : onCollectFailed(metricContext, unwrap(e), startNanos);
+                metricContext.inflight.set(null);
+                leader.complete(result);
+            });
+            return leader.thenApply(Function.identity());
+        }
+    }
+
+    /**
+     * 发起异步查询并构建样本,查询在指标超时后被取消
+     */
+    private CompletableFuture<MetricFamilySamples> queryAsync(MetricContext metricContext, CollectCycle cycle) {
+        IncrementalState incrementalState = metricContext.incrementalState;
+        if(incrementalState != null){
+            return collectIncrementalAsync(metricContext, incrementalState);
+        }
+        SharedQuery sharedQuery = cycle.sharedQuery(metricContext);
+        if(sharedQuery != null){
+            return collectSharedQueryAsync(metricContext, sharedQuery, cycle);
+        }
+        return queryMetricsAsync(metricContext, metricContext.collector, metricContext.config.getExcuteSql(), Collections.singletonList(metricContext))
+                .thenApply(familySamples -> familySamples.get(metricContext));
+    }
+
+    /**
+     * 异步的共享查询:本周期内该查询已发起时组合其结果,否则发起一次查询并为本周期请求的所有成员构建样本
+     */
+    private CompletableFuture<MetricFamilySamples> collectSharedQueryAsync(MetricContext metricContext, SharedQuery sharedQuery, CollectCycle cycle) {
+        CompletableFuture<Map<MetricContext, MetricFamilySamples>> result = new CompletableFuture<>();
+        CompletableFuture<Map<MetricContext, MetricFamilySamples>> claimed = cycle.claim(sharedQuery, result);
+        if(claimed == null){
+            List<MetricContext> members = Lists.newArrayList();
+            for (MetricContext member : sharedQuery.members) {
+                if(member == metricContext || cycle.isRequested(member)){
+                    members.add(member);
+                }
+            }
+            queryMetricsAsync(metricContext, sharedQuery.collector, sharedQuery.excuteSql, members).whenComplete((familySamples, e) -> {
+                if(e != null){
+                    result.completeExceptionally(e);
+                }else{
+                    result.complete(familySamples);
+                }
+            });
+            claimed = result;
+        }
+        return claimed.thenCompose(familySamples -> {
+            if(familySamples.containsKey(metricContext)){
+                return CompletableFuture.completedFuture(familySamples.get(metricContext));
+            }
+            return queryMetricsAsync(metricContext, metricContext.collector, metricContext.config.getExcuteSql(), Collections.singletonList(metricContext))
+                    .thenApply(own -> own.get(metricContext));
+        });
+    }
+
+    /**
+     * 异步执行一次查询,查询完成后逐行分发给各指标构建样本,超时按发起查询的指标计算
+     */
+    private CompletableFuture<Map<MetricContext, MetricFamilySamples>> queryMetricsAsync(MetricContext metricContext, ICollector collector,
+                                                                                        String excuteSql, List<MetricContext> members) {
+        long startNanos = System.nanoTime();
+        return withTimeout(((IAsyncCollector) collector).collectDataAsync(excuteSql), metricContext).thenApply(originData -> {
+            List<FamilySamplesBuilder> samplesBuilders = newSamplesBuilders(members);
+            try {
+                acceptRows(originData, members, samplesBuilders);
+                return buildFamilySamples(members, samplesBuilders, startNanos);
+            } finally {
+                releaseSamplesBuilders(samplesBuilders);
+            }
+        });
+    }
+
+    /**
+     * 异步的增量采集,超时或失败时批次被丢弃,水位不推进
+     */
+    private CompletableFuture<MetricFamilySamples> collectIncrementalAsync(MetricContext metricContext, IncrementalState incrementalState) {
+        long startNanos = System.nanoTime();
+        IncrementalState.Batch batch = incrementalState.newBatch();
+        Object[] args = new Object[]{incrementalState.watermark()};
+        return withTimeout(((IAsyncCollector) metricContext.collector).collectDataAsync(metricContext.config.getExcuteSql(), args), metricContext)
+                .thenApply(originData -> {
+                    acceptIncrementalRows(metricContext, batch, originData);
+                    return commitIncremental(metricContext, incrementalState, batch, startNanos);
+                });
+    }
+
+    /**
+     * 指标的采集超时,取指标timeout与collectTimeout中较小的非0值,均为0时返回0,即不限制
+     */
+    private long collectTimeout(MetricContext metricContext) {
+        long timeout = this.exporterConfigOptions.getCollectTimeout();
+        long metricTimeout = metricContext.config.getTimeout();
+        if(metricTimeout > 0 && (timeout <= 0 || metricTimeout < timeout)){
+            timeout = metricTimeout;
+        }
+        return timeout;
+    }
+
+    /**
+     * 为异步查询加上指标超时:超时后返回的future以TimeoutException完成,并取消采集器返回的future以停止仍在进行的调用;
+     * 超时取指标timeout与collectTimeout中较小的非0值;异步采集器的指标在绑定时已校验两者不同时为0,采集器返回的future永不完成时
+     * 也不会一直占用inflight阻塞后续的拉取
+     */
+    private <T> CompletableFuture<T> withTimeout(CompletableFuture<T> source, MetricContext metricContext) {
+        long timeout = collectTimeout(metricContext);
+        if(timeout <= 0){
+            return source;
+        }
+        long limit = timeout;
+        CompletableFuture<T> timed = new CompletableFuture<>();
+        ScheduledFuture<?> timer = this.timeoutScheduler.schedule(() -> {
+            if(timed.completeExceptionally(new TimeoutException("Exporter collect metric " + metricContext.getName() + " timeout after " + limit + "ms"))){
+                source.cancel(true);
+            }
+        }, limit, TimeUnit.MILLISECONDS);
+        source.whenComplete((value, e) -> {
+            timer.cancel(false);
+            if(e != null){
+                timed.completeExceptionally(e);
+            }else{
+                timed.complete(value);
+            }
+        });
+        return timed;
+    }
+
+    /**
+     * 同步等待异步采集的结果,采集异常原样抛出
+     */
+    private static <T> T awaitAsync(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    /**
+     * 采集单个指标,无数据时返回null
+     */
+    private MetricFamilySamples collectMetric(MetricContext metricContext, CollectCycle cycle) throws Exception {
+        if(metricContext.collector instanceof IAsyncCollector){
+            return awaitAsync(queryAsync(metricContext, cycle));
+        }
+        IncrementalState incrementalState = metricContext.incrementalState;
+        if(incrementalState != null){
+            return collectIncremental(metricContext, incrementalState, System.nanoTime());
+        }
+        SharedQuery sharedQuery = cycle.sharedQuery(metricContext);
+        if(sharedQuery != null){
+            return collectSharedQuery(metricContext, sharedQuery, cycle);
+        }
+        return queryMetrics(metricContext.collector, metricContext.config.getExcuteSql(), Collections.singletonList(metricContext))
+                .get(metricContext);
+    }
+
+    /**
+     * 共享查询的指标:本周期内该查询已执行过时直接取其结果,否则由当前线程执行一次并为本周期请求的所有成员构建样本
+     */
+    private MetricFamilySamples collectSharedQuery(MetricContext metricContext, SharedQuery sharedQuery, CollectCycle cycle) throws Exception {
+        CompletableFuture<Map<MetricContext, MetricFamilySamples>> result = new CompletableFuture<>();
+        CompletableFuture<Map<MetricContext, MetricFamilySamples>> claimed = cycle.claim(sharedQuery, result);
+        Map<MetricContext, MetricFamilySamples> familySamples;
+        if(claimed != null){
+            try {
+                familySamples = claimed.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }else{
+            List<MetricContext> members = Lists.newArrayList();
+            for (MetricContext member : sharedQuery.members) {
+                if(member == metricContext || cycle.isRequested(member)){
+                    members.add(member);
+                }
+            }
+            try {
+                familySamples = queryMetrics(sharedQuery.collector, sharedQuery.excuteSql, members);
+                result.complete(familySamples);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+                throw e;
+            }
+        }
+        if(!familySamples.containsKey(metricContext)){
+            return queryMetrics(metricContext.collector, metricContext.config.getExcuteSql(), Collections.singletonList(metricContext))
+                    .get(metricContext);
+        }
+        return familySamples.get(metricContext);
+    }
+
+    /**
+     * 执行一次查询并只读取一遍结果集,逐行分发给各指标构建样本,返回各指标的样本集合,无数据的指标对应null
+     */
+    private Map<MetricContext, MetricFamilySamples> queryMetrics(ICollector collector, String excuteSql, List<MetricContext> members) throws Exception {
+        long startNanos = System.nanoTime();
+        List<FamilySamplesBuilder> samplesBuilders = newSamplesBuilders(members);
+        try {
+            return queryMetrics(collector, excuteSql, members, samplesBuilders, startNanos);
+        } finally {
+            releaseSamplesBuilders(samplesBuilders);
+        }
+    }
+
+    private Map<MetricContext, MetricFamilySamples> queryMetrics(ICollector collector, String excuteSql, List<MetricContext> members,
+                                                                 List<FamilySamplesBuilder> samplesBuilders, long startNanos) throws Exception {
+        if(collector instanceof IStreamCollector){
+            RowCallbackHandler rowCallbackHandler;
+            if(members.size() == 1){
+                rowCallbackHandler = new SampleRowCallbackHandler(members.get(0), samplesBuilders.get(0));
+            }else{
+                RowCallbackHandler[] handlers = new RowCallbackHandler[members.size()];
+                for (int i = 0; i < handlers.length; i++) {
+                    handlers[i] = new SampleRowCallbackHandler(members.get(i), samplesBuilders.get(i));
+                }
+                rowCallbackHandler = rs -> {
+                    for (int i = 0; i < handlers.length; i++) {
+                        if(samplesBuilders.get(i) == null){
+                            continue;
+                        }
+                        try {
+                            handlers[i].processRow(rs);
+                        } catch (IllegalStateException e) {
+                            dropMember(samplesBuilders, i, e);
+                        }
+                    }
+                };
+            }
+            ((IStreamCollector) collector).collectData(excuteSql, rowCallbackHandler);
+        }else{
+            acceptRows(collector.collectData(excuteSql), members, samplesBuilders);
+        }
+        return buildFamilySamples(members, samplesBuilders, startNanos);
+    }
+
+    private List<FamilySamplesBuilder> newSamplesBuilders(List<MetricContext> members) {
+        List<FamilySamplesBuilder> samplesBuilders = Lists.newArrayListWithCapacity(members.size());
+        for (MetricContext member : members) {
+            samplesBuilders.add(FamilySamplesBuilder.of(member));
+        }
+        return samplesBuilders;
+    }
+
+    private static void releaseSamplesBuilders(List<FamilySamplesBuilder> samplesBuilders) {
+        for (FamilySamplesBuilder samplesBuilder : samplesBuilders) {
+            if(samplesBuilder != null){
+                samplesBuilder.release();
+            }
+        }
+    }
+
+    private void acceptRows(List<Map<String, Object>> originData, List<MetricContext> members, List<FamilySamplesBuilder> samplesBuilders) {
+        if (originData == null) {
+            return;
+        }
+        for (Map<String, Object> data : originData) {
+            for (int i = 0; i < members.size(); i++) {
+                MetricContext member = members.get(i);
+                acceptRow(samplesBuilders, i, bulidTagValues(data, member.tagKeys), handleValue(data, member.config.getValueKey()));
+            }
+        }
+    }
+
+    /**
+     * 分发一行数据给各指标;共享查询中某个指标的数据有误(如label组合重复)时只放弃该指标,该指标随后单独查询并按单个指标的采集失败处理
+     */
+    private static void acceptRow(List<FamilySamplesBuilder> samplesBuilders, int index, List<String> tagValues, double value) {
+        FamilySamplesBuilder samplesBuilder = samplesBuilders.get(index);
+        if(samplesBuilder == null){
+            return;
+        }
+        try {
+            samplesBuilder.accept(tagValues, value);
+        } catch (IllegalStateException e) {
+            if(samplesBuilders.size() == 1){
+                throw e;
+            }
+            dropMember(samplesBuilders, index, e);
+        }
+    }
+
+    private static void dropMember(List<FamilySamplesBuilder> samplesBuilders, int index, IllegalStateException e) {
+        LOGGER.debug("Exporter drop shared query member, error message {}", e.getMessage());
+        samplesBuilders.get(index).release();
+        samplesBuilders.set(index, null);
+    }
+
+    /**
+     * 构建各指标的样本集合并记录采集耗时、行数与溢出序列数,无数据的指标对应null,已被放弃的共享查询成员不在结果中
+     */
+    private Map<MetricContext, MetricFamilySamples> buildFamilySamples(List<MetricContext> members, List<FamilySamplesBuilder> samplesBuilders, long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        Map<MetricContext, MetricFamilySamples> familySamples = new IdentityHashMap<>();
+        for (int i = 0; i < members.size(); i++) {
+            if(samplesBuilders.get(i) == null){
+                continue;
+            }
+            MetricFamilySamples metricFamilySamples = samplesBuilders.get(i).build();
+            members.get(i).observeCost(elapsedNanos);
+            ExporterMetrics.observeCollect(members.get(i).getName(), elapsedNanos, samplesBuilders.get(i).rows(),
+                    metricFamilySamples == null ? 0 : metricFamilySamples.samples.size());
+            ExporterMetrics.observeOverflow(members.get(i).getName(), samplesBuilders.get(i).overflow());
+            familySamples.put(members.get(i), metricFamilySamples);
         }
         return familySamples;
     }
 
+    /**
+     * 增量采集,以当前水位为绑定参数只查询新增的数据,批次完整读取后合并到累加值并推进水位,返回累加后的COUNTER样本
+     */
+    private MetricFamilySamples collectIncremental(MetricContext metricContext, IncrementalState incrementalState, long startNanos) throws Exception {
+        MetricConfigOptions metricConfig = metricContext.config;
+        IncrementalState.Batch batch = incrementalState.newBatch();
+        Object[] args = new Object[]{incrementalState.watermark()};
+        if(metricContext.collector instanceof IStreamCollector){
+            ((IStreamCollector) metricContext.collector).collectData(metricConfig.getExcuteSql(), args,
+                    new SampleRowCallbackHandler(metricContext, batch));
+        }else{
+            acceptIncrementalRows(metricContext, batch, metricContext.collector.collectData(metricConfig.getExcuteSql(), args));
+        }
+        return commitIncremental(metricContext, incrementalState, batch, startNanos);
+    }
+
+    private void acceptIncrementalRows(MetricContext metricContext, IncrementalState.Batch batch, List<Map<String, Object>> originData) {
+        if (originData == null) {
+            return;
+        }
+        MetricConfigOptions metricConfig = metricContext.config;
+        for (Map<String, Object> data : originData) {
+            batch.accept(bulidTagValues(data, metricContext.tagKeys), handleValue(data, metricConfig.getValueKey()));
+            batch.observeWatermark(data.get(metricConfig.getWatermarkKey()));
+        }
+    }
+
+    /**
+     * 批次完整读取后合并到累加值并推进水位,返回累加后的COUNTER样本
+     */
+    private MetricFamilySamples commitIncremental(MetricContext metricContext, IncrementalState incrementalState, IncrementalState.Batch batch, long startNanos) {
+        MetricConfigOptions metricConfig = metricContext.config;
+        ExporterMetrics.observeOverflow(metricConfig.getName(), incrementalState.commit(batch));
+        List<MetricFamilySamples.Sample> samples = incrementalState.samples(metricContext.sampleName, metricContext.tagKeys);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        metricContext.observeCost(elapsedNanos);
+        ExporterMetrics.observeCollect(metricConfig.getName(), elapsedNanos, batch.rows(), samples.size());
+        if(samples.isEmpty()){
+            return null;
+        }
+        return new MetricFamilySamples(metricConfig.getName(), metricContext.type, metricConfig.getHelp(), samples);
+    }
+
+    /**
+     * 后台定时采集指标并替换快照,采集失败时保留上一次的快照;共享查询的指标在同一周期内刷新,查询只执行一次
+     */
+    private void refreshMetrics(List<MetricContext> metricContexts, MetricContexts bound) {
+        CollectCycle cycle = new CollectCycle(metricContexts, bound);
+        for (MetricContext metricContext : metricContexts) {
+            try {
+                collectGuarded(metricContext, cycle);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Exporter refresh metric {} error, error message {}", metricContext.getName(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private void initRefreshScheduler() {
+        scheduleRefresh(this.metricContexts);
+    }
+
+    /**
+     * 按指标重新调度后台定时采集,已有的定时任务全部取消;共享查询的指标只调度一次
+     */
+    private void scheduleRefresh(MetricContexts metricContexts) {
+        for (ScheduledFuture<?> refreshTask : this.refreshTasks) {
+            refreshTask.cancel(false);
+        }
+        this.refreshTasks.clear();
+        Set<SharedQuery> scheduledQueries = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (MetricContext metricContext : metricContexts) {
+            long refreshInterval = metricContext.config.getRefreshInterval();
+            if(refreshInterval <= 0){
+                continue;
+            }
+            List<MetricContext> refreshContexts = Collections.singletonList(metricContext);
+            SharedQuery sharedQuery = metricContexts.sharedQuery(metricContext);
+            if(sharedQuery != null){
+                if(!scheduledQueries.add(sharedQuery)){
+                    continue;
+                }
+                refreshContexts = sharedQuery.members;
+            }
+            if(this.refreshScheduler == null){
+                this.refreshScheduler = Executors.newScheduledThreadPool(this.exporterConfigOptions.getRefreshThreads(),
+                        new ThreadFactoryBuilder().setNameFormat("business-exporter-refresh-%d").setDaemon(true).build());
+            }
+            List<MetricContext> scheduledContexts = refreshContexts;
+            Runnable refreshTask = () -> refreshMetrics(scheduledContexts, metricContexts);
+            if(metricContext.bulkhead != null){
+                refreshTask = metricContext.bulkhead.nonOverlapping(refreshTask);
+            }
+            this.refreshTasks.add(this.refreshScheduler.scheduleWithFixedDelay(refreshTask, initialDelay(scheduledContexts, refreshInterval),
+                    refreshInterval, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * 首次刷新的延迟:所有指标都已有未过期的快照时,在最近一次采集满一个刷新间隔后再刷新,热加载保留的指标不会因重新调度而重复查询
+     */
+    private static long initialDelay(List<MetricContext> refreshContexts, long refreshInterval) {
+        long delay = refreshInterval;
+        long now = System.currentTimeMillis();
+        for (MetricContext refreshContext : refreshContexts) {
+            MetricSnapshot snapshot = refreshContext.snapshot;
+            if(snapshot == null || refreshContext.stale){
+                return 0L;
+            }
+            delay = Math.min(delay, Math.max(0L, refreshInterval - (now - snapshot.collectTime)));
+        }
+        return delay;
+    }
+
+    /**
+     * 加载持久化的快照作为各指标的初始快照并标记为过期,随后定期将新的快照写入文件
+     */
+    private void initSnapshotStore() {
+        String snapshotFile = this.exporterConfigOptions.getSnapshotFile();
+        if(snapshotFile == null || "".equals(snapshotFile.trim())){
+            return;
+        }
+        this.snapshotStore = new SnapshotStore(Paths.get(snapshotFile.trim()));
+        try {
+            Map<String, MetricSnapshot> snapshots = this.snapshotStore.load();
+            int restored = 0;
+            for (MetricContext metricContext : this.metricContexts) {
+                MetricSnapshot snapshot = snapshots.get(metricContext.getName());
+                if(snapshot != null && snapshot.familySamples.type == metricContext.type && metricContext.snapshot == null){
+                    metricContext.snapshot = snapshot;
+                    metricContext.stale = true;
+                    restored++;
+                }
+            }
+            if(restored > 0){
+                DATA_VERSION.incrementAndGet();
+            }
+            LOGGER.info("Exporter restored {} metric snapshots from {}", restored, snapshotFile);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Exporter load snapshot file {} error, start without snapshots, error message {}", snapshotFile, e.getMessage(), e);
+        }
+        this.persistedVersion = DATA_VERSION.get();
+        long persistInterval = this.exporterConfigOptions.getSnapshotPersistInterval();
+        this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("business-exporter-snapshot-%d").setDaemon(true).build());
+        this.snapshotScheduler.scheduleWithFixedDelay(this::persistSnapshots, persistInterval, persistInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 数据版本变化时将各指标最近一次成功的快照写入文件
+     */
+    private void persistSnapshots() {
+        long version = DATA_VERSION.get();
+        if(version == this.persistedVersion){
+            return;
+        }
+        try {
+            this.snapshotStore.save(this.metricContexts);
+            this.persistedVersion = version;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Exporter persist snapshot file {} error, error message {}", this.exporterConfigOptions.getSnapshotFile(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 开启syncConfigToServerEnabled时,立即并按syncInterval定期根据各指标的采集耗时生成prometheus的file_sd targets与采集配置片段
+     */
+    private void initScrapeConfigSync() {
+        if(!this.exporterConfigOptions.isSyncConfigToServerEnabled()){
+            return;
+        }
+        PrometheusOptions prometheus = this.exporterConfigOptions.getPrometheus();
+        ExporterClientOptions client = this.exporterConfigOptions.getClient();
+        List<String> targets = Lists.newArrayList();
+        if(prometheus.getTargets() != null){
+            for (String target : prometheus.getTargets().split(",")) {
+                if(!"".equals(target.trim())){
+                    targets.add(target.trim());
+                }
+            }
+        }
+        try {
+            if(targets.isEmpty()){
+                targets.add(InetAddress.getLocalHost().getCanonicalHostName() + ":" + client.getClientPort());
+            }
+            String requestUri = client == null ? null : client.getRequestUri();
+            Set<String> exporterNames = new LinkedHashSet<>(ExporterMetrics.names());
+            if(this.exporterConfigOptions.isBuiltInHttpEnabled()){
+                exporterNames.addAll(HttpServer.metricNames());
+            }
+            this.scrapeConfigSync = new ScrapeConfigSync(prometheus, Paths.get(prometheus.getConfigPath().trim()), targets,
+                    requestUri == null || "".equals(requestUri.trim()) ? "/metrics" : requestUri.trim(), exporterNames);
+        } catch (IOException | RuntimeException e) {
+            throw new RuntimeException("Exporter config error, init prometheus config sync error, error message " + e.getMessage(), e);
+        }
+        this.syncScheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("business-exporter-sync-%d").setDaemon(true).build());
+        this.syncScheduler.scheduleWithFixedDelay(this::syncScrapeConfig, 0L, prometheus.getSyncInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 按当前生效的指标重新生成prometheus采集配置,写入失败时保留已有的文件
+     */
+    private void syncScrapeConfig() {
+        try {
+            if(this.scrapeConfigSync.sync(this.metricContexts, this.exporterConfigOptions.getMaxStaleness(),
+                    this.exporterConfigOptions.isParallelCollectEnabled())){
+                LOGGER.info("Exporter synced prometheus scrape config to {}", this.scrapeConfigSync.getScrapeConfigFile());
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Exporter sync prometheus scrape config to {} error, error message {}",
+                    this.exporterConfigOptions.getPrometheus().getConfigPath(), e.getMessage(), e);
+        }
+    }
+
+    private void initTimeoutScheduler(List<MetricContext> metricContexts) {
+        if(this.timeoutScheduler != null){
+            return;
+        }
+        for (MetricContext metricContext : metricContexts) {
+            if(metricContext.collector instanceof IAsyncCollector){
+                this.timeoutScheduler = Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder().setNameFormat("business-exporter-timeout-%d").setDaemon(true).build());
+                return;
+            }
+        }
+    }
+
+    private void initCollectExecutor() {
+        if(this.exporterConfigOptions.isParallelCollectEnabled()){
+            int collectThreads = this.exporterConfigOptions.getCollectThreads();
+            this.collectExecutor = new ThreadPoolExecutor(collectThreads, collectThreads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(this.exporterConfigOptions.getCollectQueueSize()),
+                    new ThreadFactoryBuilder().setNameFormat("business-exporter-collect-%d").setDaemon(true).build(),
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+
+    /**
+     * 停止后台定时采集及并行采集线程池,并关闭exporter创建的采集器,作为spring bean时容器关闭会自动调用
+     */
+    public void close() {
+        EXPORTERS.remove(this);
+        if(this.refreshScheduler != null){
+            this.refreshScheduler.shutdownNow();
+        }
+        if(this.collectExecutor != null){
+            this.collectExecutor.shutdownNow();
+        }
+        for (DatasourceBulkhead bulkhead : this.bulkheads.values()) {
+            bulkhead.shutdown();
+        }
+        if(this.timeoutScheduler != null){
+            this.timeoutScheduler.shutdownNow();
+        }
+        if(this.reloadScheduler != null){
+            this.reloadScheduler.shutdownNow();
+        }
+        if(this.syncScheduler != null){
+            this.syncScheduler.shutdownNow();
+        }
+        if(this.snapshotScheduler != null){
+            this.snapshotScheduler.shutdownNow();
+            persistSnapshots();
+        }
+        if(this.exporterMetrics != null){
+            this.exporterMetrics.remove(this.metricContexts);
+        }
+        for (MetricContext metricContext : this.metricContexts) {
+            ExporterMetrics.removeMetric(metricContext.getName());
+        }
+        synchronized (this) {
+            for (ICollector collector : this.ownedCollectors.values()) {
+                closeCollector(collector);
+            }
+            for (ICollector collector : this.retiredCollectors) {
+                closeCollector(collector);
+            }
+            this.retiredCollectors.clear();
+        }
+    }
+
+    private static void closeCollector(ICollector collector) {
+        try {
+            collector.close();
+        } catch (Exception e) {
+            LOGGER.warn("Exporter close collector {} error, error message {}", collector.getClass().getName(), e.getMessage(), e);
+        }
+    }
+
     private BusinessExporter(Builder builder) {
         this.exporterConfigOptions = builder.exporterConfigOptions;
         this.jdbcTemplate = builder.jdbcTemplate;
+        this.jdbcTemplates = builder.jdbcTemplates;
+        this.collectorFactory = builder.collectorFactory != null ? builder.collectorFactory
+                : new ReflectiveCollectorFactory(builder.jdbcTemplate, builder.jdbcTemplates, queryTimeout(builder));
+        this.collectors = builder.collectors;
         initVerify();
+        initSnapshotStore();
+        initRefreshScheduler();
+        initCollectExecutor();
+        initMetricsFileWatcher();
+        initScrapeConfigSync();
+    }
+
+    /**
+     * 默认采集器的JDBC查询超时:启用并行采集或使用命名数据源时采集受collectTimeout限制,查询超时与之一致,否则不设置
+     */
+    private static long queryTimeout(Builder builder) {
+        ExporterConfigOptions exporterConfigOptions = builder.exporterConfigOptions;
+        if(exporterConfigOptions == null || (!exporterConfigOptions.isParallelCollectEnabled() && builder.jdbcTemplates.isEmpty())){
+            return 0L;
+        }
+        return exporterConfigOptions.getCollectTimeout();
     }
 
     public static Builder builder() {
@@ -163,6 +1109,12 @@ public class BusinessExporter extends Collector {
 
         private JdbcTemplate jdbcTemplate = null;
 
+        private final Map<String, JdbcTemplate> jdbcTemplates = new HashMap<>();
+
+        private CollectorFactory collectorFactory = null;
+
+        private final Map<Class<? extends ICollector>, ICollector> collectors = new HashMap<>();
+
         public Builder exporterConfigOptions(ExporterConfigOptions exporterConfigOptions){
             this.exporterConfigOptions = exporterConfigOptions;
             return this;
@@ -171,6 +1123,27 @@ public class BusinessExporter extends Collector {
             this.jdbcTemplate = jdbcTemplate;
             return this;
         }
+        /**
+         * 命名数据源的JdbcTemplate,指标配置datasource为该名称时使用
+         */
+        public Builder jdbcTemplate(String datasource, JdbcTemplate jdbcTemplate){
+            this.jdbcTemplates.put(datasource, jdbcTemplate);
+            return this;
+        }
+        /**
+         * 采集器工厂,未配置时通过反射创建采集器
+         */
+        public Builder collectorFactory(CollectorFactory collectorFactory){
+            this.collectorFactory = collectorFactory;
+            return this;
+        }
+        /**
+         * 预先构建的采集器,customCollector为该实例类型的指标直接复用该实例,生命周期由调用方负责
+         */
+        public Builder collector(ICollector collector){
+            this.collectors.put(collector.getClass(), collector);
+            return this;
+        }
 
         public BusinessExporter build(){
             return new BusinessExporter(this).register();
@@ -190,19 +1163,65 @@ public class BusinessExporter extends Collector {
         if(this.exporterConfigOptions.isSyncConfigToServerEnabled() && this.exporterConfigOptions.getPrometheus() == null){
             throw new RuntimeException("Exporter config error, when syncConfigToServerEnabled is true, the prometheus config must not be null");
         }
-        if(this.exporterConfigOptions.getMetrics() == null){
-            return;
+        if(this.exporterConfigOptions.isSyncConfigToServerEnabled()){
+            String configPath = this.exporterConfigOptions.getPrometheus().getConfigPath();
+            if(configPath == null || "".equals(configPath.trim())){
+                throw new RuntimeException("Exporter config error, when syncConfigToServerEnabled is true, the prometheus configPath must not be blank");
+            }
+            String targets = this.exporterConfigOptions.getPrometheus().getTargets();
+            if((targets == null || "".equals(targets.trim())) && this.exporterConfigOptions.getClient() == null){
+                throw new RuntimeException("Exporter config error, when syncConfigToServerEnabled is true, the prometheus targets or the client config must not be null");
+            }
+        }
+        if(this.exporterConfigOptions.getMaxStaleness() < 0){
+            throw new RuntimeException("Exporter config error, the maxStaleness must not be negative");
+        }
+        if(this.exporterConfigOptions.getRefreshThreads() <= 0){
+            throw new RuntimeException("Exporter config error, the refreshThreads must be greater than 0");
         }
+        if(this.exporterConfigOptions.isParallelCollectEnabled()
+                && (this.exporterConfigOptions.getCollectThreads() <= 0 || this.exporterConfigOptions.getCollectQueueSize() <= 0
+                || this.exporterConfigOptions.getCollectTimeout() <= 0)){
+            throw new RuntimeException("Exporter config error, when parallelCollectEnabled is true, the collectThreads, collectQueueSize and collectTimeout must be greater than 0");
+        }
+        String metricsFile = this.exporterConfigOptions.getMetricsFile();
+        if(metricsFile != null && !"".equals(metricsFile.trim())){
+            this.metricDefinitionsFile = new MetricDefinitionsFile(Paths.get(metricsFile.trim()));
+        }
+        Collection<MetricConfigOptions> metrics;
+        try {
+            metrics = loadMetrics();
+        } catch (IOException | RuntimeException e) {
+            throw new RuntimeException("Exporter config error, load metrics file " + metricsFile + " error, error message " + e.getMessage(), e);
+        }
+        verifyMetrics(metrics);
+        activate(MetricContexts.bind(bindContexts(metrics, MetricContexts.EMPTY)));
+    }
+
+    /**
+     * 校验指标配置
+     */
+    private void verifyMetrics(Collection<MetricConfigOptions> metrics) {
         boolean needJdbcTemplate = false;
-        for (MetricConfigOptions metricConfigOptions : this.exporterConfigOptions.getMetrics().values()) {
+        boolean hasDatasource = false;
+        boolean defaultFactory = this.collectorFactory instanceof ReflectiveCollectorFactory;
+        ExporterClientOptions client = this.exporterConfigOptions.getClient();
+        boolean renderCacheEnabled = this.exporterConfigOptions.isBuiltInHttpEnabled() && client != null && client.isRenderCacheEnabled();
+        for (MetricConfigOptions metricConfigOptions : metrics) {
             if(metricConfigOptions == null){
                 continue;
             }
             if(metricConfigOptions.getName() == null || "".equals(metricConfigOptions.getName())){
                 throw new RuntimeException("Exporter config error, the metrics config metric name must not be null or blank");
             }
+            String datasource = metricConfigOptions.getDatasource();
+            hasDatasource |= datasource != null;
             if (!metricConfigOptions.isCustomCollectorEnabled()){
-                needJdbcTemplate = true;
+                boolean createdByDefaultFactory = defaultFactory && !this.collectors.containsKey(metricConfigOptions.getCustomCollector());
+                needJdbcTemplate |= createdByDefaultFactory && datasource == null;
+                if(createdByDefaultFactory && datasource != null && this.jdbcTemplates.get(datasource) == null){
+                    throw new RuntimeException("Exporter config error, the jdbcTemplate of datasource " + datasource + " must not be null");
+                }
                 if (metricConfigOptions.getExcuteSql() == null || "".equals(metricConfigOptions.getExcuteSql().trim())) {
                     throw new RuntimeException("Exporter config error, when customCollectorEnabled is false, the excuteSql must not be null or blank");
                 }
@@ -210,9 +1229,292 @@ public class BusinessExporter extends Collector {
             if(metricConfigOptions.isCustomCollectorEnabled() && metricConfigOptions.getCustomCollector() == DefaultCollector.class){
                 throw new RuntimeException("Exporter config error, when customCollectorEnabled is true, the customCollector must not be DefaultCollector");
             }
+            if(metricConfigOptions.getRefreshInterval() < 0 || metricConfigOptions.getTimeout() < 0){
+                throw new RuntimeException("Exporter config error, the metrics config refreshInterval and timeout must not be negative");
+            }
+            if(renderCacheEnabled && metricConfigOptions.getRefreshInterval() <= 0){
+                throw new RuntimeException("Exporter config error, when renderCacheEnabled is true, the metrics config refreshInterval of metric "
+                        + metricConfigOptions.getName() + " must be greater than 0");
+            }
+            if(metricConfigOptions.getFailureThreshold() < 0){
+                throw new RuntimeException("Exporter config error, the metrics config failureThreshold must not be negative");
+            }
+            if(metricConfigOptions.getFailureThreshold() > 0 && metricConfigOptions.getCircuitBreakDuration() <= 0){
+                throw new RuntimeException("Exporter config error, when failureThreshold is greater than 0, the circuitBreakDuration must be greater than 0");
+            }
+            if(metricConfigOptions.isIncrementalEnabled()
+                    && (metricConfigOptions.getWatermarkKey() == null || "".equals(metricConfigOptions.getWatermarkKey().trim()) || metricConfigOptions.getInitialWatermark() == null)){
+                throw new RuntimeException("Exporter config error, when incrementalEnabled is true, the watermarkKey and initialWatermark must not be null or blank");
+            }
+            if(metricConfigOptions.isIncrementalEnabled()
+                    && metricConfigOptions.getType() != MetricType.GAUGE && metricConfigOptions.getType() != MetricType.COUNTER){
+                throw new RuntimeException("Exporter config error, when incrementalEnabled is true, the type must be GAUGE or COUNTER");
+            }
+            if(metricConfigOptions.getAggregation() != Aggregation.NONE && (metricConfigOptions.isIncrementalEnabled()
+                    || (metricConfigOptions.getType() != MetricType.GAUGE && metricConfigOptions.getType() != MetricType.COUNTER))){
+                throw new RuntimeException("Exporter config error, the aggregation only supports GAUGE or COUNTER type without incrementalEnabled");
+            }
+            if(metricConfigOptions.getType() == MetricType.HISTOGRAM && !MetricConfigOptions.isValidBuckets(metricConfigOptions.getBuckets())){
+                throw new RuntimeException("Exporter config error, when type is HISTOGRAM, the buckets must not be empty and must be in strictly increasing order");
+            }
+            if(metricConfigOptions.getType() == MetricType.SUMMARY && (!MetricConfigOptions.isValidQuantiles(metricConfigOptions.getQuantiles())
+                    || metricConfigOptions.getQuantileAccuracy() <= 0 || metricConfigOptions.getQuantileAccuracy() >= 1)){
+                throw new RuntimeException("Exporter config error, when type is SUMMARY, the quantiles must be between 0 and 1 and the quantileAccuracy must be between 0 and 1");
+            }
+        }
+        if(hasDatasource && this.exporterConfigOptions.getCollectTimeout() <= 0){
+            throw new RuntimeException("Exporter config error, when metrics use named datasources, the collectTimeout must be greater than 0");
         }
         if(needJdbcTemplate && this.jdbcTemplate == null){
             throw new RuntimeException("Exporter config error, when use DefaultCollector collect data, the jdbcTemplate config must not be null");
         }
     }
+
+    /**
+     * 配置的metrics与指标定义文件中的指标按名称合并,文件中的指标覆盖同名的配置
+     */
+    private Collection<MetricConfigOptions> loadMetrics() throws IOException {
+        Map<String, MetricConfigOptions> metrics = new LinkedHashMap<>();
+        if(this.exporterConfigOptions.getMetrics() != null){
+            putMetrics(metrics, this.exporterConfigOptions.getMetrics().values());
+        }
+        if(this.metricDefinitionsFile != null){
+            putMetrics(metrics, this.metricDefinitionsFile.load().values());
+        }
+        return metrics.values();
+    }
+
+    private static void putMetrics(Map<String, MetricConfigOptions> metrics, Collection<MetricConfigOptions> metricConfigs) {
+        for (MetricConfigOptions metricConfigOptions : metricConfigs) {
+            if(metricConfigOptions != null){
+                metrics.put(metricConfigOptions.getName(), metricConfigOptions);
+            }
+        }
+    }
+
+    /**
+     * 热加载指标定义,同名的指标以后出现的为准:校验新的指标配置,配置未变化的指标保留其快照、采集状态与采集器,新增或变化的指标重新绑定采集器,
+     * 共享查询与后台定时采集按新的指标重新绑定,当前生效的指标整体替换,进行中的拉取使用的仍是替换前的指标与共享查询;
+     * 校验、绑定或注册失败时抛出异常,当前生效的指标不变,本次新建的采集器与数据源隔离舱被释放
+     * @param metrics 新的全部指标配置
+     */
+    public synchronized void reloadMetrics(Collection<MetricConfigOptions> metrics) {
+        Map<String, MetricConfigOptions> metricConfigs = new LinkedHashMap<>();
+        putMetrics(metricConfigs, metrics);
+        verifyMetrics(metricConfigs.values());
+        MetricContexts previous = this.metricContexts;
+        MetricContexts contexts;
+        try {
+            contexts = MetricContexts.bind(bindContexts(metricConfigs.values(), previous));
+            activate(contexts);
+            registerNames(previous, contexts);
+        } catch (RuntimeException e) {
+            retire(previous);
+            throw e;
+        }
+        Set<MetricContext> previousSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        previousSet.addAll(previous);
+        Set<MetricContext> currentSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        currentSet.addAll(contexts);
+        List<MetricContext> added = Lists.newArrayList();
+        for (MetricContext context : contexts) {
+            if(!previousSet.contains(context)){
+                added.add(context);
+            }
+        }
+        List<MetricContext> removed = Lists.newArrayList();
+        for (MetricContext context : previous) {
+            if(!currentSet.contains(context)){
+                removed.add(context);
+            }
+        }
+        if(this.exporterMetrics != null){
+            this.exporterMetrics.remove(removed);
+            this.exporterMetrics.add(added);
+        }
+        for (MetricContext context : removed) {
+            if(!metricConfigs.containsKey(context.getName())){
+                ExporterMetrics.removeMetric(context.getName());
+            }
+        }
+        scheduleRefresh(contexts);
+        retire(contexts);
+        if(this.scrapeConfigSync != null){
+            syncScrapeConfig();
+        }
+        DATA_VERSION.incrementAndGet();
+        LOGGER.info("Exporter reloaded metrics, {} added or changed, {} removed or changed, {} kept", added.size(), removed.size(), contexts.size() - added.size());
+    }
+
+    /**
+     * 整体替换当前生效的指标及其共享查询绑定
+     */
+    private void activate(MetricContexts metricContexts) {
+        initTimeoutScheduler(metricContexts);
+        this.metricContexts = metricContexts;
+    }
+
+    /**
+     * 新的指标带来新的指标名称时重新注册到registry,使按名称过滤的拉取能找到新指标;名称与其他collector冲突时恢复为替换前的指标
+     */
+    private void registerNames(MetricContexts previous, MetricContexts metricContexts) {
+        CollectorRegistry currentRegistry = this.registry;
+        if(currentRegistry == null || previous.sampleNames().containsAll(metricContexts.sampleNames())){
+            return;
+        }
+        currentRegistry.unregister(this);
+        try {
+            currentRegistry.register(this);
+        } catch (IllegalArgumentException e) {
+            activate(previous);
+            currentRegistry.register(this);
+            throw new RuntimeException("Exporter reload error, error message " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 样本名称是否属于某个已注册exporter当前生效的指标,热加载移除的指标名称不再属于exporter
+     */
+    private static boolean isVersionedName(String name) {
+        for (BusinessExporter exporter : EXPORTERS) {
+            if(exporter.metricContexts.sampleNames().contains(name)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 释放metricContexts不再使用的采集器与数据源隔离舱:采集器延迟到进行中的采集结束后再关闭,
+     * 隔离舱不再接受新的采集,已提交的采集执行完后释放线程
+     */
+    private void retire(List<MetricContext> metricContexts) {
+        Set<ICollector> used = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<DatasourceBulkhead> usedBulkheads = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (MetricContext metricContext : metricContexts) {
+            used.add(metricContext.collector);
+            if(metricContext.bulkhead != null){
+                usedBulkheads.add(metricContext.bulkhead);
+            }
+        }
+        this.bulkheads.values().removeIf(bulkhead -> {
+            if(usedBulkheads.contains(bulkhead)){
+                return false;
+            }
+            bulkhead.retire();
+            return true;
+        });
+        List<ICollector> retired = Lists.newArrayList();
+        ownedCollectors.values().removeIf(collector -> {
+            if(used.contains(collector)){
+                return false;
+            }
+            retired.add(collector);
+            return true;
+        });
+        if(retired.isEmpty()){
+            return;
+        }
+        this.retiredCollectors.addAll(retired);
+        long delay = Math.max(1000L, this.exporterConfigOptions.getCollectTimeout());
+        reloadScheduler().schedule(() -> {
+            synchronized (this) {
+                for (ICollector collector : retired) {
+                    if(this.retiredCollectors.remove(collector)){
+                        closeCollector(collector);
+                    }
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private ScheduledExecutorService reloadScheduler() {
+        if(this.reloadScheduler == null){
+            this.reloadScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("business-exporter-reload-%d").setDaemon(true).build());
+        }
+        return this.reloadScheduler;
+    }
+
+    /**
+     * 定期检查指标定义文件,文件变化时热加载
+     */
+    private synchronized void initMetricsFileWatcher() {
+        if(this.metricDefinitionsFile == null){
+            return;
+        }
+        long checkInterval = this.exporterConfigOptions.getMetricsFileCheckInterval();
+        reloadScheduler().scheduleWithFixedDelay(this::reloadMetricsFile, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 指标定义文件变化时,将文件中的指标按名称合并到metrics后热加载,加载失败时保留当前生效的指标
+     */
+    private void reloadMetricsFile() {
+        try {
+            if(!this.metricDefinitionsFile.isModified()){
+                return;
+            }
+            reloadMetrics(loadMetrics());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Exporter reload metrics file {} error, keep current metrics, error message {}",
+                    this.metricDefinitionsFile.getPath(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 为每个指标绑定采集器及数据源隔离舱,同一数据源的同一采集器类型只创建一次并在各次采集之间复用;
+     * previous中名称与配置都相同的指标直接复用原有的上下文
+     */
+    private synchronized List<MetricContext> bindContexts(Collection<MetricConfigOptions> metricConfigs, List<MetricContext> previous) {
+        Map<String, MetricContext> previousContexts = new HashMap<>();
+        for (MetricContext metricContext : previous) {
+            previousContexts.put(metricContext.getName(), metricContext);
+        }
+        List<MetricContext> metricContexts = Lists.newArrayList();
+        for (MetricConfigOptions metricConfigOptions : metricConfigs) {
+            if(metricConfigOptions == null){
+                continue;
+            }
+            MetricContext previousContext = previousContexts.get(metricConfigOptions.getName());
+            if(previousContext != null && previousContext.config.equals(metricConfigOptions)){
+                metricContexts.add(previousContext);
+                continue;
+            }
+            Class<? extends ICollector> collectorClass = metricConfigOptions.getCustomCollector();
+            String datasource = metricConfigOptions.getDatasource();
+            List<Object> collectorKey = Arrays.asList(collectorClass, datasource);
+            ICollector collector = this.collectors.get(collectorClass);
+            if(collector == null){
+                collector = this.ownedCollectors.get(collectorKey);
+            }
+            if(collector == null){
+                try {
+                    collector = this.collectorFactory.create(metricConfigOptions);
+                    collector.init();
+                } catch (Exception e) {
+                    throw new RuntimeException("Exporter config error, create collector " + collectorClass.getName() + " error, error message " + e.getMessage(), e);
+                }
+                this.ownedCollectors.put(collectorKey, collector);
+            }
+            if(metricConfigOptions.isIncrementalEnabled() && !collector.isBoundParametersSupported()){
+                throw new RuntimeException("Exporter config error, when incrementalEnabled is true, the collector " + collector.getClass().getName()
+                        + " of metric " + metricConfigOptions.getName() + " must support bound parameters");
+            }
+            if(collector instanceof IAsyncCollector && metricConfigOptions.getTimeout() <= 0 && this.exporterConfigOptions.getCollectTimeout() <= 0){
+                throw new RuntimeException("Exporter config error, the collector " + collector.getClass().getName() + " of metric "
+                        + metricConfigOptions.getName() + " is asynchronous, the timeout or collectTimeout must be greater than 0");
+            }
+            DatasourceBulkhead bulkhead = null;
+            if(datasource != null){
+                bulkhead = this.bulkheads.computeIfAbsent(datasource, name -> {
+                    Map<String, DatasourceOptions> datasources = this.exporterConfigOptions.getDatasources();
+                    DatasourceOptions options = datasources == null ? null : datasources.get(name);
+                    return new DatasourceBulkhead(name, options == null ? new DatasourceOptions() : options);
+                });
+            }
+            metricContexts.add(new MetricContext(metricConfigOptions, collector, bulkhead, this.exporterConfigOptions.getMaxSeries()));
+        }
+        return Collections.unmodifiableList(metricContexts);
+    }
 }
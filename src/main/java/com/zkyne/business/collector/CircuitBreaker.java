@@ -0,0 +1,76 @@
+package com.zkyne.business.collector;
+
+/**
+ * @className: CircuitBreaker
+ * @description: 指标采集熔断器,连续失败达到阈值后熔断一段时间不再执行查询,熔断时间到期后放行一次试探采集,
+ * 试探失败则熔断时间翻倍直至上限,成功则恢复
+ * @author: zkyne
+ * @date: 2026/10/18 16:05
+ * @see <a href=""></a>
+ */
+final class CircuitBreaker {
+
+    private final int failureThreshold;
+
+    private final long breakDuration;
+
+    private final long maxBreakDuration;
+
+    private int consecutiveFailures;
+
+    private int openCount;
+
+    private long openUntil;
+
+    private boolean trialRunning;
+
+    CircuitBreaker(int failureThreshold, long breakDuration, long maxBreakDuration) {
+        this.failureThreshold = failureThreshold;
+        this.breakDuration = breakDuration;
+        this.maxBreakDuration = Math.max(breakDuration, maxBreakDuration);
+    }
+
+    /**
+     * 是否允许执行采集,熔断到期后只放行一次试探采集
+     */
+    synchronized boolean allowRequest(long now) {
+        if(!isTripped()){
+            return true;
+        }
+        if(now < this.openUntil || this.trialRunning){
+            return false;
+        }
+        this.trialRunning = true;
+        return true;
+    }
+
+    synchronized void onSuccess() {
+        this.consecutiveFailures = 0;
+        this.openCount = 0;
+        this.trialRunning = false;
+    }
+
+    synchronized void onFailure(long now) {
+        this.consecutiveFailures++;
+        this.trialRunning = false;
+        if(isTripped()){
+            long duration = this.breakDuration;
+            for (int i = 0; i < this.openCount && duration < this.maxBreakDuration; i++) {
+                duration <<= 1;
+            }
+            this.openUntil = now + Math.min(duration, this.maxBreakDuration);
+            this.openCount++;
+        }
+    }
+
+    /**
+     * 当前是否处于熔断状态
+     */
+    synchronized boolean isOpen(long now) {
+        return isTripped() && now < this.openUntil;
+    }
+
+    private boolean isTripped() {
+        return this.failureThreshold > 0 && this.consecutiveFailures >= this.failureThreshold;
+    }
+}
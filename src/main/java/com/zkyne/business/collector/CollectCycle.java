@@ -0,0 +1,64 @@
+package com.zkyne.business.collector;
+
+import io.prometheus.client.Collector.MetricFamilySamples;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @className: CollectCycle
+ * @description: 一次采集周期(一次拉取或一次后台定时刷新),记录本周期请求的指标及已执行的共享查询结果,
+ * 同一周期内共享查询的后续成员直接取用已有结果,不再重复执行查询
+ * @author: zkyne
+ * @date: 2026/10/18 16:10
+ * @see <a href=""></a>
+ */
+final class CollectCycle {
+    /**
+     * 周期开始时间,等待其他线程的采集结果时据此计算超时
+     */
+    final long startTime = System.currentTimeMillis();
+
+    private final Set<MetricContext> requested = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private final Map<SharedQuery, CompletableFuture<Map<MetricContext, MetricFamilySamples>>> results = new ConcurrentHashMap<>();
+    /**
+     * 本周期使用的共享查询绑定,热加载替换指标后进行中的周期仍使用替换前的绑定
+     */
+    private final MetricContexts bound;
+
+    /**
+     * @param metricContexts 本周期请求的指标
+     * @param bound 请求的指标所属的生效指标
+     */
+    CollectCycle(List<MetricContext> metricContexts, MetricContexts bound) {
+        this.requested.addAll(metricContexts);
+        this.bound = bound;
+    }
+
+    /**
+     * 指标在本周期绑定的共享查询,不与其他指标共享查询时为null
+     */
+    SharedQuery sharedQuery(MetricContext metricContext) {
+        return this.bound.sharedQuery(metricContext);
+    }
+
+    /**
+     * 登记共享查询的执行,返回null表示当前线程负责执行并通过传入的future发布结果,否则返回已登记的结果
+     */
+    CompletableFuture<Map<MetricContext, MetricFamilySamples>> claim(SharedQuery sharedQuery, CompletableFuture<Map<MetricContext, MetricFamilySamples>> result) {
+        return this.results.putIfAbsent(sharedQuery, result);
+    }
+
+    /**
+     * 共享查询中本周期请求的指标,未被请求的指标不构建样本
+     */
+    boolean isRequested(MetricContext metricContext) {
+        return this.requested.contains(metricContext);
+    }
+}
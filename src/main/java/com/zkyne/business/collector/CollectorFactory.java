@@ -0,0 +1,20 @@
+package com.zkyne.business.collector;
+
+import com.zkyne.business.config.ExporterConfigOptions.MetricConfigOptions;
+
+/**
+ * @className: CollectorFactory
+ * @description: 采集器工厂,BusinessExporter初始化时为每个采集器类型调用一次,创建的实例在各次采集之间复用
+ * @author: zkyne
+ * @date: 2026/10/18 10:12
+ * @see <a href=""></a>
+ */
+public interface CollectorFactory {
+    /**
+     * 创建指标对应的采集器
+     * @param metricConfig 指标配置
+     * @return
+     * @throws Exception
+     */
+    ICollector create(MetricConfigOptions metricConfig) throws Exception;
+}
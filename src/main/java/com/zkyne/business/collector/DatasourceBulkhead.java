@@ -0,0 +1,68 @@
+package com.zkyne.business.collector;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.zkyne.business.config.ExporterConfigOptions.DatasourceOptions;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @className: DatasourceBulkhead
+ * @description: 命名数据源的隔离舱,该数据源的所有采集都在其独立的有界线程池中执行,线程数即该数据源同时执行的最大查询数,
+ * 某个数据源变慢或饱和时只会占满自己的线程与队列,不会拖慢其他数据源的指标
+ * @author: zkyne
+ * @date: 2026/10/18 19:10
+ * @see <a href=""></a>
+ */
+final class DatasourceBulkhead {
+
+    final String name;
+
+    final ExecutorService executor;
+
+    DatasourceBulkhead(String name, DatasourceOptions options) {
+        this.name = name;
+        this.executor = new ThreadPoolExecutor(options.getMaxConcurrentQueries(), options.getMaxConcurrentQueries(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(options.getQueueSize()),
+                new ThreadFactoryBuilder().setNameFormat("business-exporter-" + name + "-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 包装后台定时任务,每次触发时提交到该数据源的线程池执行,上一次尚未执行完或队列已满时跳过本次触发
+     */
+    Runnable nonOverlapping(Runnable task) {
+        AtomicBoolean running = new AtomicBoolean();
+        return () -> {
+            if(!running.compareAndSet(false, true)){
+                return;
+            }
+            try {
+                this.executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        running.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                running.set(false);
+            }
+        };
+    }
+
+    /**
+     * 不再接受新的采集,已提交的采集执行完后释放线程
+     */
+    void retire() {
+        this.executor.shutdown();
+    }
+
+    void shutdown() {
+        this.executor.shutdownNow();
+    }
+}
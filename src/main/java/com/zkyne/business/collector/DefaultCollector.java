@@ -1,6 +1,7 @@
 package com.zkyne.business.collector;
 
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 
 import java.util.List;
 import java.util.Map;
@@ -12,7 +13,7 @@ import java.util.Map;
  * @date: 2020/11/17 8:47
  * @see <a href=""></a>
  */
-public class DefaultCollector implements ICollector {
+public class DefaultCollector implements IStreamCollector {
 
     private final JdbcTemplate jdbcTemplate;
 
@@ -24,4 +25,24 @@ public class DefaultCollector implements ICollector {
     public List<Map<String, Object>> collectData(String excuteSql) {
         return jdbcTemplate.queryForList(excuteSql);
     }
+
+    @Override
+    public void collectData(String excuteSql, RowCallbackHandler rowCallbackHandler) {
+        jdbcTemplate.query(excuteSql, rowCallbackHandler);
+    }
+
+    @Override
+    public List<Map<String, Object>> collectData(String excuteSql, Object[] args) {
+        return jdbcTemplate.queryForList(excuteSql, args);
+    }
+
+    @Override
+    public void collectData(String excuteSql, Object[] args, RowCallbackHandler rowCallbackHandler) {
+        jdbcTemplate.query(excuteSql, rowCallbackHandler, args);
+    }
+
+    @Override
+    public boolean isBoundParametersSupported() {
+        return true;
+    }
 }
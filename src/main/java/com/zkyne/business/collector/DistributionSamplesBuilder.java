@@ -0,0 +1,176 @@
+package com.zkyne.business.collector;
+
+import com.google.common.collect.Lists;
+import io.prometheus.client.Collector;
+import io.prometheus.client.Collector.MetricFamilySamples;
+import io.prometheus.client.Collector.MetricFamilySamples.Sample;
+import io.prometheus.client.Collector.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @className: DistributionSamplesBuilder
+ * @description: HISTOGRAM与SUMMARY类型指标的样本构建器,每一行的指标值作为一次观测,按label分组逐行统计分布,
+ * 直方图按桶计数,摘要使用分位数草图,内存只与label组合数及桶数有关,与行数无关
+ * @author: zkyne
+ * @date: 2026/10/18 17:35
+ * @see <a href=""></a>
+ */
+class DistributionSamplesBuilder implements FamilySamplesBuilder {
+
+    private final String name;
+
+    private final Type type;
+
+    private final String help;
+
+    private final List<String> tagKeys;
+    /**
+     * 直方图_bucket样本与摘要分位值样本的label名称,在tagKeys后追加le或quantile
+     */
+    private final List<String> extendedTagKeys;
+    /**
+     * 直方图的桶上界,最后一个为+Inf
+     */
+    private final double[] upperBounds;
+
+    private final double[] quantiles;
+
+    private final double quantileAccuracy;
+    /**
+     * 允许的label组合数,为0时不限制,超出后新出现的label组合统计到溢出序列中
+     */
+    private final int maxSeries;
+
+    private final Map<List<String>, Distribution> distributions = new LinkedHashMap<>();
+
+    private long rows;
+
+    private long overflow;
+
+    DistributionSamplesBuilder(MetricContext metricContext) {
+        this.name = metricContext.getName();
+        this.type = metricContext.type;
+        this.help = metricContext.config.getHelp();
+        this.tagKeys = metricContext.tagKeys;
+        List<String> extended = new ArrayList<>(this.tagKeys);
+        extended.add(this.type == Type.HISTOGRAM ? "le" : "quantile");
+        this.extendedTagKeys = Collections.unmodifiableList(extended);
+        if(this.type == Type.HISTOGRAM){
+            List<Double> buckets = metricContext.config.getBuckets();
+            boolean infinite = buckets.get(buckets.size() - 1) == Double.POSITIVE_INFINITY;
+            this.upperBounds = new double[infinite ? buckets.size() : buckets.size() + 1];
+            for (int i = 0; i < buckets.size(); i++) {
+                this.upperBounds[i] = buckets.get(i);
+            }
+            this.upperBounds[this.upperBounds.length - 1] = Double.POSITIVE_INFINITY;
+            this.quantiles = null;
+        }else{
+            this.upperBounds = null;
+            this.quantiles = new double[metricContext.config.getQuantiles().size()];
+            for (int i = 0; i < this.quantiles.length; i++) {
+                this.quantiles[i] = metricContext.config.getQuantiles().get(i);
+            }
+        }
+        this.quantileAccuracy = metricContext.config.getQuantileAccuracy();
+        this.maxSeries = this.tagKeys.isEmpty() ? 0 : metricContext.maxSeries;
+    }
+
+    @Override
+    public void accept(List<String> tagValues, double value) {
+        this.rows++;
+        Distribution distribution = this.distributions.get(tagValues);
+        if(distribution == null){
+            if(this.maxSeries > 0 && this.distributions.size() >= this.maxSeries - 1){
+                this.overflow++;
+                tagValues = TopKSeriesSketch.otherTagValues(tagValues.size());
+                distribution = this.distributions.get(tagValues);
+            }
+            if(distribution == null){
+                distribution = new Distribution();
+                this.distributions.put(tagValues, distribution);
+            }
+        }
+        distribution.observe(value);
+    }
+
+    @Override
+    public long rows() {
+        return this.rows;
+    }
+
+    @Override
+    public long overflow() {
+        return this.overflow;
+    }
+
+    @Override
+    public MetricFamilySamples build() {
+        if(this.distributions.isEmpty()){
+            return null;
+        }
+        List<Sample> samples = Lists.newArrayList();
+        for (Map.Entry<List<String>, Distribution> entry : this.distributions.entrySet()) {
+            List<String> tagValues = entry.getKey();
+            Distribution distribution = entry.getValue();
+            if(this.type == Type.HISTOGRAM){
+                long cumulative = 0L;
+                for (int i = 0; i < this.upperBounds.length; i++) {
+                    cumulative += distribution.bucketCounts[i];
+                    samples.add(new Sample(this.name + "_bucket", this.extendedTagKeys,
+                            withTagValue(tagValues, Collector.doubleToGoString(this.upperBounds[i])), cumulative));
+                }
+            }else{
+                for (double quantile : this.quantiles) {
+                    samples.add(new Sample(this.name, this.extendedTagKeys,
+                            withTagValue(tagValues, Collector.doubleToGoString(quantile)), distribution.sketch.quantile(quantile)));
+                }
+            }
+            samples.add(new Sample(this.name + "_count", this.tagKeys, tagValues, distribution.count));
+            samples.add(new Sample(this.name + "_sum", this.tagKeys, tagValues, distribution.sum));
+        }
+        return new MetricFamilySamples(this.name, this.type, this.help, samples);
+    }
+
+    private static List<String> withTagValue(List<String> tagValues, String tagValue) {
+        List<String> extended = new ArrayList<>(tagValues.size() + 1);
+        extended.addAll(tagValues);
+        extended.add(tagValue);
+        return extended;
+    }
+
+    /**
+     * 单个label组合的分布统计
+     */
+    private final class Distribution {
+
+        private final long[] bucketCounts;
+
+        private final QuantileSketch sketch;
+
+        private long count;
+
+        private double sum;
+
+        private Distribution() {
+            this.bucketCounts = upperBounds == null ? null : new long[upperBounds.length];
+            this.sketch = upperBounds == null ? new QuantileSketch(quantileAccuracy) : null;
+        }
+
+        private void observe(double value) {
+            this.count++;
+            this.sum += value;
+            if(this.bucketCounts != null){
+                int index = Arrays.binarySearch(upperBounds, value);
+                this.bucketCounts[index >= 0 ? index : Math.min(-index - 1, upperBounds.length - 1)]++;
+            }else{
+                this.sketch.add(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.zkyne.business.collector;
+
+import com.google.common.collect.Lists;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.GaugeMetricFamily;
+import io.prometheus.client.Histogram;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @className: ExporterMetrics
+ * @description: exporter自身的运行指标,同一个CollectorRegistry只注册一次,由注册到该registry的所有BusinessExporter共享;
+ * 计数类指标基于simpleclient的分段累加器实现,记录时不会成为并发热点
+ * @author: zkyne
+ * @date: 2026/10/18 16:20
+ * @see <a href=""></a>
+ */
+final class ExporterMetrics extends Collector implements Collector.Describable {
+
+    private static final Map<CollectorRegistry, ExporterMetrics> REGISTERED = new IdentityHashMap<>();
+
+    private static final List<String> METRIC_LABEL = Collections.singletonList("metric");
+
+    private static final Histogram QUERY_DURATION = Histogram.build()
+            .name("business_exporter_query_duration_seconds")
+            .help("Time spent collecting the metric from its collector")
+            .labelNames("metric")
+            .buckets(0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60)
+            .create();
+
+    private static final Counter ROWS = Counter.build()
+            .name("business_exporter_rows_total")
+            .help("Rows returned by the collector of the metric")
+            .labelNames("metric")
+            .create();
+
+    private static final Gauge SAMPLES = Gauge.build()
+            .name("business_exporter_samples")
+            .help("Samples emitted by the last successful collection of the metric")
+            .labelNames("metric")
+            .create();
+
+    private static final Counter ERRORS = Counter.build()
+            .name("business_exporter_collect_errors_total")
+            .help("Failed collections of the metric")
+            .labelNames("metric")
+            .create();
+
+    private static final Counter SERIES_OVERFLOW = Counter.build()
+            .name("business_exporter_series_overflow_total")
+            .help("Series of the metric folded into the other label set because the max series budget was exceeded")
+            .labelNames("metric")
+            .create();
+
+    private final List<MetricContext> metricContexts = new CopyOnWriteArrayList<>();
+
+    private ExporterMetrics() {
+    }
+
+    /**
+     * 获取registry对应的exporter指标,首次获取时注册
+     */
+    static ExporterMetrics registerTo(CollectorRegistry registry) {
+        synchronized (REGISTERED) {
+            ExporterMetrics exporterMetrics = REGISTERED.get(registry);
+            if(exporterMetrics == null){
+                exporterMetrics = new ExporterMetrics().register(registry);
+                REGISTERED.put(registry, exporterMetrics);
+            }
+            return exporterMetrics;
+        }
+    }
+
+    /**
+     * 记录一次成功的采集
+     */
+    static void observeCollect(String metricName, long durationNanos, long rows, int samples) {
+        QUERY_DURATION.labels(metricName).observe(durationNanos / NANOSECONDS_PER_SECOND);
+        ROWS.labels(metricName).inc(rows);
+        SAMPLES.labels(metricName).set(samples);
+    }
+
+    /**
+     * 记录一次失败的采集
+     */
+    static void observeError(String metricName, long durationNanos) {
+        QUERY_DURATION.labels(metricName).observe(durationNanos / NANOSECONDS_PER_SECOND);
+        ERRORS.labels(metricName).inc();
+    }
+
+    /**
+     * 记录超出序列数上限被合并的序列数
+     */
+    static void observeOverflow(String metricName, long series) {
+        if(series > 0){
+            SERIES_OVERFLOW.labels(metricName).inc(series);
+        }
+    }
+
+    /**
+     * 删除指标的运行指标,指标被热加载移除或exporter关闭后不再暴露其序列
+     */
+    static void removeMetric(String metricName) {
+        QUERY_DURATION.remove(metricName);
+        ROWS.remove(metricName);
+        SAMPLES.remove(metricName);
+        ERRORS.remove(metricName);
+        SERIES_OVERFLOW.remove(metricName);
+    }
+
+    /**
+     * exporter自身指标的样本名称
+     */
+    static Set<String> names() {
+        Set<String> names = new LinkedHashSet<>();
+        for (MetricFamilySamples familySamples : new ExporterMetrics().describe()) {
+            names.addAll(Arrays.asList(familySamples.getNames()));
+        }
+        return names;
+    }
+
+    void add(List<MetricContext> metricContexts) {
+        this.metricContexts.addAll(metricContexts);
+    }
+
+    void remove(List<MetricContext> metricContexts) {
+        this.metricContexts.removeAll(metricContexts);
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        long now = System.currentTimeMillis();
+        GaugeMetricFamily snapshotAge = snapshotAgeFamily();
+        GaugeMetricFamily staleSeconds = staleSecondsFamily();
+        GaugeMetricFamily circuitOpen = circuitOpenFamily();
+        for (MetricContext metricContext : this.metricContexts) {
+            List<String> labelValues = Collections.singletonList(metricContext.getName());
+            MetricSnapshot snapshot = metricContext.snapshot;
+            if(snapshot != null){
+                double age = (now - snapshot.collectTime) / MILLISECONDS_PER_SECOND;
+                snapshotAge.addMetric(labelValues, age);
+                if(metricContext.stale){
+                    staleSeconds.addMetric(labelValues, age);
+                }
+            }
+            circuitOpen.addMetric(labelValues, metricContext.circuitBreaker.isOpen(now) ? 1.0D : 0.0D);
+        }
+        List<MetricFamilySamples> familySamples = Lists.newArrayList(snapshotAge, staleSeconds, circuitOpen);
+        familySamples.addAll(QUERY_DURATION.collect());
+        familySamples.addAll(ROWS.collect());
+        familySamples.addAll(SAMPLES.collect());
+        familySamples.addAll(ERRORS.collect());
+        familySamples.addAll(SERIES_OVERFLOW.collect());
+        return familySamples;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        List<MetricFamilySamples> familySamples = Lists.newArrayList(snapshotAgeFamily(), staleSecondsFamily(), circuitOpenFamily());
+        familySamples.addAll(QUERY_DURATION.describe());
+        familySamples.addAll(ROWS.describe());
+        familySamples.addAll(SAMPLES.describe());
+        familySamples.addAll(ERRORS.describe());
+        familySamples.addAll(SERIES_OVERFLOW.describe());
+        return familySamples;
+    }
+
+    private static GaugeMetricFamily snapshotAgeFamily() {
+        return new GaugeMetricFamily("business_exporter_snapshot_age_seconds",
+                "Age of the last good snapshot of the metric", METRIC_LABEL);
+    }
+
+    private static GaugeMetricFamily staleSecondsFamily() {
+        return new GaugeMetricFamily("business_exporter_metric_stale_seconds",
+                "Age of the last good snapshot served because the latest collection failed or the circuit is open", METRIC_LABEL);
+    }
+
+    private static GaugeMetricFamily circuitOpenFamily() {
+        return new GaugeMetricFamily("business_exporter_circuit_open",
+                "Whether the collection circuit breaker of the metric is open", METRIC_LABEL);
+    }
+}
@@ -0,0 +1,51 @@
+package com.zkyne.business.collector;
+
+import com.zkyne.business.config.Aggregation;
+import io.prometheus.client.Collector.MetricFamilySamples;
+
+/**
+ * @className: FamilySamplesBuilder
+ * @description: 接收一次采集的全部样本并构建指标样本集合,不同指标类型对样本的汇总方式不同
+ * @author: zkyne
+ * @date: 2026/10/18 17:30
+ * @see <a href=""></a>
+ */
+interface FamilySamplesBuilder extends SampleSink {
+
+    /**
+     * 已接收的行数
+     */
+    long rows();
+
+    /**
+     * 超出序列数上限被合并到溢出序列的次数
+     */
+    long overflow();
+
+    /**
+     * 构建指标样本集合,无样本时返回null
+     */
+    MetricFamilySamples build();
+
+    /**
+     * 采集失败未调用build时释放构建器占用的序列表,build之后调用无影响
+     */
+    default void release() {
+    }
+
+    /**
+     * 按指标类型创建样本集合构建器
+     */
+    static FamilySamplesBuilder of(MetricContext metricContext) {
+        switch (metricContext.type) {
+            case HISTOGRAM:
+            case SUMMARY:
+                return new DistributionSamplesBuilder(metricContext);
+            default:
+                if(metricContext.config.getAggregation() != Aggregation.NONE){
+                    return new AggregatingSamplesBuilder(metricContext);
+                }
+                return new MetricSamplesBuilder(metricContext);
+        }
+    }
+}
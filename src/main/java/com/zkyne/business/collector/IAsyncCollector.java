@@ -0,0 +1,67 @@
+package com.zkyne.business.collector;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * @className: IAsyncCollector
+ * @description: 异步数据采集器,采集方法立即返回CompletableFuture,查询完成时再完成该future,采集期间不占用exporter的线程;
+ * 超时或被取消时exporter会调用返回的future的cancel,实现方应据此停止仍在进行的调用
+ * @author: zkyne
+ * @date: 2026/10/18 19:40
+ * @see <a href=""></a>
+ */
+public interface IAsyncCollector extends ICollector {
+    /**
+     * 异步收集数据
+     * @param excuteSql
+     * @return
+     */
+    CompletableFuture<List<Map<String, Object>>> collectDataAsync(String excuteSql);
+
+    /**
+     * 带绑定参数异步收集数据,用于增量采集时绑定水位参数
+     * @param excuteSql
+     * @param args
+     * @return
+     */
+    default CompletableFuture<List<Map<String, Object>>> collectDataAsync(String excuteSql, Object[] args) {
+        if(args == null || args.length == 0){
+            return collectDataAsync(excuteSql);
+        }
+        CompletableFuture<List<Map<String, Object>>> unsupported = new CompletableFuture<>();
+        unsupported.completeExceptionally(new UnsupportedOperationException(getClass().getName() + " does not support bound parameters"));
+        return unsupported;
+    }
+
+    /**
+     * 同步收集数据,等待异步采集完成,供只支持同步采集的调用方使用
+     * @param excuteSql
+     * @return
+     */
+    @Override
+    default List<Map<String, Object>> collectData(String excuteSql) {
+        return join(collectDataAsync(excuteSql));
+    }
+
+    @Override
+    default List<Map<String, Object>> collectData(String excuteSql, Object[] args) {
+        return join(collectDataAsync(excuteSql, args));
+    }
+
+    /**
+     * 等待future完成,采集异常原样抛出
+     */
+    static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -18,4 +18,38 @@ public interface ICollector {
      */
     List<Map<String, Object>> collectData(String excuteSql);
 
+    /**
+     * 带绑定参数收集数据,用于增量采集时绑定水位参数,不支持绑定参数的采集器只能用于非增量采集
+     * @param excuteSql
+     * @param args
+     * @return
+     */
+    default List<Map<String, Object>> collectData(String excuteSql, Object[] args) {
+        if(args == null || args.length == 0){
+            return collectData(excuteSql);
+        }
+        throw new UnsupportedOperationException(getClass().getName() + " does not support bound parameters");
+    }
+
+    /**
+     * 是否支持带绑定参数收集数据,实现了带绑定参数的collectData(流式采集器与异步采集器为对应的重载)的采集器需返回true,
+     * 增量采集的指标只能使用返回true的采集器
+     * @return
+     */
+    default boolean isBoundParametersSupported() {
+        return false;
+    }
+
+    /**
+     * 采集器初始化,由BusinessExporter创建的采集器在创建后调用一次
+     */
+    default void init() {
+    }
+
+    /**
+     * 采集器关闭,由BusinessExporter创建的采集器在exporter关闭时调用一次
+     */
+    default void close() {
+    }
+
 }
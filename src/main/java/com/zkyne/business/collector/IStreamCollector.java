@@ -0,0 +1,33 @@
+package com.zkyne.business.collector;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+/**
+ * @className: IStreamCollector
+ * @description: 流式数据采集器,逐行将查询结果推送给exporter转换为指标样本,不再构建中间的List<Map<String,Object>>
+ * @author: zkyne
+ * @date: 2026/10/18 11:02
+ * @see <a href=""></a>
+ */
+public interface IStreamCollector extends ICollector {
+    /**
+     * 流式收集数据,每一行结果都需要回调rowCallbackHandler
+     * @param excuteSql
+     * @param rowCallbackHandler
+     */
+    void collectData(String excuteSql, RowCallbackHandler rowCallbackHandler);
+
+    /**
+     * 带绑定参数流式收集数据,用于增量采集时绑定水位参数
+     * @param excuteSql
+     * @param args
+     * @param rowCallbackHandler
+     */
+    default void collectData(String excuteSql, Object[] args, RowCallbackHandler rowCallbackHandler) {
+        if(args == null || args.length == 0){
+            collectData(excuteSql, rowCallbackHandler);
+            return;
+        }
+        throw new UnsupportedOperationException(getClass().getName() + " does not support bound parameters");
+    }
+}
@@ -0,0 +1,132 @@
+package com.zkyne.business.collector;
+
+import com.google.common.collect.Lists;
+import io.prometheus.client.Collector.MetricFamilySamples.Sample;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @className: IncrementalState
+ * @description: 增量采集状态,保存当前水位与按label累加的指标值;每次采集只查询水位之后的新增数据作为一个批次,
+ * 批次完整读取后才合并到累加值并推进水位,采集失败时丢弃该批次,下次从原水位重新查询
+ * @author: zkyne
+ * @date: 2026/10/18 15:20
+ * @see <a href=""></a>
+ */
+final class IncrementalState {
+
+    private Object watermark;
+
+    private final Map<List<String>, double[]> totals = new LinkedHashMap<>();
+
+    /**
+     * 累加的序列数上限,为0时不限制;达到上限后新出现的序列累加到溢出序列中,已有序列不会被淘汰,以保证计数器单调递增
+     */
+    private final int maxSeries;
+
+    IncrementalState(Object initialWatermark, int maxSeries) {
+        this.watermark = initialWatermark;
+        this.maxSeries = maxSeries;
+    }
+
+    /**
+     * 当前水位,作为下一次查询的绑定参数
+     */
+    synchronized Object watermark() {
+        return this.watermark;
+    }
+
+    Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * 将批次的增量合并到累加值,批次中有水位时推进水位,返回因超出序列数上限累加到溢出序列的序列数
+     */
+    synchronized long commit(Batch batch) {
+        long overflow = 0L;
+        for (Map.Entry<List<String>, double[]> entry : batch.delta.entrySet()) {
+            List<String> tagValues = entry.getKey();
+            double[] total = this.totals.get(tagValues);
+            if(total == null && this.maxSeries > 0 && this.totals.size() >= this.maxSeries - 1){
+                overflow++;
+                tagValues = TopKSeriesSketch.otherTagValues(tagValues.size());
+                total = this.totals.get(tagValues);
+            }
+            if(total == null){
+                this.totals.put(tagValues, new double[]{entry.getValue()[0]});
+            }else{
+                total[0] += entry.getValue()[0];
+            }
+        }
+        if(batch.maxWatermark != null){
+            this.watermark = batch.maxWatermark;
+        }
+        return overflow;
+    }
+
+    /**
+     * 以累加值构建样本,无样本时返回空列表
+     */
+    synchronized List<Sample> samples(String sampleName, List<String> tagKeys) {
+        List<Sample> samples = Lists.newArrayListWithCapacity(this.totals.size());
+        for (Map.Entry<List<String>, double[]> entry : this.totals.entrySet()) {
+            samples.add(new Sample(sampleName, tagKeys, entry.getKey(), entry.getValue()[0]));
+        }
+        return samples;
+    }
+
+    /**
+     * 水位比较,数值类型统一按BigDecimal比较,其余类型按Comparable比较
+     */
+    @SuppressWarnings("unchecked")
+    static int compareWatermark(Object left, Object right) {
+        if(left instanceof Number && right instanceof Number){
+            return new BigDecimal(left.toString()).compareTo(new BigDecimal(right.toString()));
+        }
+        if(left instanceof Comparable && left.getClass().isInstance(right)){
+            return ((Comparable<Object>) left).compareTo(right);
+        }
+        return left.toString().compareTo(right.toString());
+    }
+
+    /**
+     * 一次增量查询的结果,按label汇总本批次的增量并记录最大水位
+     */
+    static final class Batch implements SampleSink {
+
+        private final Map<List<String>, double[]> delta = new HashMap<>();
+
+        private Object maxWatermark;
+
+        private long rows;
+
+        private Batch() {
+        }
+
+        @Override
+        public void accept(List<String> tagValues, double value) {
+            this.rows++;
+            double[] sum = this.delta.get(tagValues);
+            if(sum == null){
+                this.delta.put(tagValues, new double[]{value});
+            }else{
+                sum[0] += value;
+            }
+        }
+
+        void observeWatermark(Object watermark) {
+            if(watermark != null && (this.maxWatermark == null || compareWatermark(watermark, this.maxWatermark) > 0)){
+                this.maxWatermark = watermark;
+            }
+        }
+
+        long rows() {
+            return this.rows;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.zkyne.business.collector;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @className: LabelTupleTable
+ * @description: 以label值组合为key的开放寻址哈希表,每个不同的label组合只保留首次出现的实例,
+ * 聚合值按插入顺序保存在基本类型数组中,逐行聚合时不产生装箱对象
+ * @author: zkyne
+ * @date: 2026/10/18 18:05
+ * @see <a href=""></a>
+ */
+final class LabelTupleTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * 哈希槽,保存条目下标+1,0表示空槽
+     */
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * 条目的label组合,通过tuple(int)读取
+     */
+    private Object[] tuples = new Object[INITIAL_CAPACITY];
+
+    private int[] hashes = new int[INITIAL_CAPACITY];
+
+    double[] sums = new double[INITIAL_CAPACITY];
+
+    double[] mins = new double[INITIAL_CAPACITY];
+
+    double[] maxs = new double[INITIAL_CAPACITY];
+
+    long[] counts = new long[INITIAL_CAPACITY];
+
+    private int size;
+
+    /**
+     * 查找label组合对应的条目下标,不存在且条目数未达到limit时新增条目,达到limit时返回-1;limit为0时不限制
+     */
+    int indexOf(List<String> tuple, int limit) {
+        int hash = spread(tuple.hashCode());
+        int mask = this.slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = this.slots[slot] - 1;
+            if(entry < 0){
+                if(limit > 0 && this.size >= limit){
+                    return -1;
+                }
+                return insert(slot, tuple, hash);
+            }
+            if(this.hashes[entry] == hash && this.tuples[entry].equals(tuple)){
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * 累加一个值到条目
+     */
+    void add(int index, double value) {
+        if(this.counts[index] == 0){
+            this.mins[index] = value;
+            this.maxs[index] = value;
+        }else{
+            this.mins[index] = Math.min(this.mins[index], value);
+            this.maxs[index] = Math.max(this.maxs[index], value);
+        }
+        this.sums[index] += value;
+        this.counts[index]++;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    @SuppressWarnings("unchecked")
+    List<String> tuple(int index) {
+        return (List<String>) this.tuples[index];
+    }
+
+    private int insert(int slot, List<String> tuple, int hash) {
+        int index = this.size++;
+        if(index == this.tuples.length){
+            grow();
+            return insertResized(tuple, hash, index);
+        }
+        this.tuples[index] = tuple;
+        this.hashes[index] = hash;
+        this.slots[slot] = index + 1;
+        return index;
+    }
+
+    private int insertResized(List<String> tuple, int hash, int index) {
+        this.tuples[index] = tuple;
+        this.hashes[index] = hash;
+        int mask = this.slots.length - 1;
+        int slot = hash & mask;
+        while (this.slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        this.slots[slot] = index + 1;
+        return index;
+    }
+
+    /**
+     * 条目数组扩容一倍,哈希槽保持为条目容量的两倍并重新散列
+     */
+    private void grow() {
+        int capacity = this.tuples.length * 2;
+        this.tuples = Arrays.copyOf(this.tuples, capacity);
+        this.hashes = Arrays.copyOf(this.hashes, capacity);
+        this.sums = Arrays.copyOf(this.sums, capacity);
+        this.mins = Arrays.copyOf(this.mins, capacity);
+        this.maxs = Arrays.copyOf(this.maxs, capacity);
+        this.counts = Arrays.copyOf(this.counts, capacity);
+        this.slots = new int[capacity * 2];
+        int mask = this.slots.length - 1;
+        for (int i = 0; i < this.size - 1; i++) {
+            int slot = this.hashes[i] & mask;
+            while (this.slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.slots[slot] = i + 1;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
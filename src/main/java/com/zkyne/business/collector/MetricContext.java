@@ -0,0 +1,145 @@
+package com.zkyne.business.collector;
+
+import com.zkyne.business.config.Aggregation;
+import com.zkyne.business.config.ExporterConfigOptions.MetricConfigOptions;
+import com.zkyne.business.config.MetricType;
+import io.prometheus.client.Collector.MetricFamilySamples;
+import io.prometheus.client.Collector.Type;
+import io.prometheus.client.Predicate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @className: MetricContext
+ * @description: 指标运行时上下文,在BusinessExporter初始化时绑定指标配置与采集器,并保存该指标的采集状态
+ * @author: zkyne
+ * @date: 2026/10/18 10:20
+ * @see <a href=""></a>
+ */
+final class MetricContext {
+
+    final MetricConfigOptions config;
+
+    final ICollector collector;
+    /**
+     * 指标所用命名数据源的隔离舱,使用默认数据源时为null
+     */
+    final DatasourceBulkhead bulkhead;
+    /**
+     * 指标的label名称,初始化时确定顺序,所有样本共享
+     */
+    final List<String> tagKeys;
+    /**
+     * 指标暴露的prometheus类型,启用增量采集时固定为COUNTER
+     */
+    final Type type;
+    /**
+     * 样本名称,COUNTER类型以_total结尾
+     */
+    final String sampleName;
+    /**
+     * 增量采集状态,未启用增量采集时为null
+     */
+    final IncrementalState incrementalState;
+    /**
+     * 该指标实际生效的序列数上限,取指标与全局maxSeries中较小的非0值,为0时不限制
+     */
+    final int maxSeries;
+    /**
+     * 跨刷新复用的序列表,只用于未限制序列数的普通GAUGE、COUNTER指标,增量、聚合、直方图与摘要指标为null
+     */
+    final SeriesTable seriesTable;
+    /**
+     * 最近一次采集成功的快照
+     */
+    volatile MetricSnapshot snapshot;
+    /**
+     * 最近一次采集是否失败或被熔断,为true时返回的是过期的快照
+     */
+    volatile boolean stale;
+
+    final CircuitBreaker circuitBreaker;
+    /**
+     * 正在进行中的采集,并发的拉取请求等待并共享该结果
+     */
+    final AtomicReference<CompletableFuture<MetricFamilySamples>> inflight = new AtomicReference<>();
+    /**
+     * 流式采集时缓存的行映射计划,结果集结构变化时重新编译
+     */
+    volatile RowMappingPlan mappingPlan;
+    /**
+     * 采集耗时(纳秒),耗时上升时立即跟随,下降时逐步衰减,用于生成prometheus采集配置
+     */
+    volatile long costNanos;
+
+    MetricContext(MetricConfigOptions config, ICollector collector, DatasourceBulkhead bulkhead, int globalMaxSeries) {
+        this.config = config;
+        this.collector = collector;
+        this.bulkhead = bulkhead;
+        this.maxSeries = config.getMaxSeries() <= 0 ? globalMaxSeries
+                : globalMaxSeries <= 0 ? config.getMaxSeries() : Math.min(config.getMaxSeries(), globalMaxSeries);
+        this.tagKeys = Collections.unmodifiableList(config.getTagKeys());
+        this.type = config.isIncrementalEnabled() ? Type.COUNTER : toType(config.getType());
+        this.sampleName = this.type == Type.COUNTER && !config.getName().endsWith("_total") ? config.getName() + "_total" : config.getName();
+        this.incrementalState = config.isIncrementalEnabled() ? new IncrementalState(config.getInitialWatermark(), this.tagKeys.isEmpty() ? 0 : this.maxSeries) : null;
+        this.seriesTable = this.incrementalState == null && (this.type == Type.GAUGE || this.type == Type.COUNTER)
+                && config.getAggregation() == Aggregation.NONE && (this.maxSeries <= 0 || this.tagKeys.isEmpty())
+                ? new SeriesTable(this.sampleName, this.tagKeys) : null;
+        this.circuitBreaker = new CircuitBreaker(config.getFailureThreshold(), config.getCircuitBreakDuration(), config.getMaxCircuitBreakDuration());
+    }
+
+    private static Type toType(MetricType metricType) {
+        switch (metricType) {
+            case COUNTER:
+                return Type.COUNTER;
+            case HISTOGRAM:
+                return Type.HISTOGRAM;
+            case SUMMARY:
+                return Type.SUMMARY;
+            default:
+                return Type.GAUGE;
+        }
+    }
+
+    /**
+     * 记录一次采集的耗时,采集失败的耗时同样计入
+     */
+    void observeCost(long elapsedNanos) {
+        long cost = this.costNanos;
+        this.costNanos = elapsedNanos >= cost ? elapsedNanos : cost - ((cost - elapsedNanos) >> 2);
+    }
+
+    String getName() {
+        return this.config.getName();
+    }
+
+    /**
+     * 最近一次采集成功的结果,没有时返回null
+     */
+    MetricFamilySamples lastGoodSamples() {
+        MetricSnapshot lastGood = this.snapshot;
+        return lastGood == null ? null : lastGood.familySamples;
+    }
+
+    /**
+     * 不含样本的指标描述,用于注册时声明指标名称
+     */
+    MetricFamilySamples describe() {
+        return new MetricFamilySamples(getName(), this.type, this.config.getHelp(), Collections.emptyList());
+    }
+
+    /**
+     * 该指标产生的样本名称是否有满足过滤条件的
+     */
+    boolean matches(Predicate<String> sampleNameFilter) {
+        for (String sampleName : describe().getNames()) {
+            if(sampleNameFilter.test(sampleName)){
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,98 @@
+package com.zkyne.business.collector;
+
+import com.google.common.collect.Lists;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * @className: MetricContexts
+ * @description: 生效的指标上下文及其共享查询绑定,不可变,热加载时整体替换;共享查询的绑定随指标列表一起替换,
+ * 不修改热加载保留的指标上下文,进行中的采集看到的始终是同一版本的指标与绑定;同时记录这些指标的样本名称,随指标一起替换
+ * @author: zkyne
+ * @date: 2026/10/18 21:30
+ * @see <a href=""></a>
+ */
+final class MetricContexts extends AbstractList<MetricContext> implements RandomAccess {
+
+    static final MetricContexts EMPTY = new MetricContexts(Collections.emptyList(), Collections.emptyMap());
+
+    private final List<MetricContext> contexts;
+
+    private final Map<MetricContext, SharedQuery> sharedQueries;
+    /**
+     * 各指标describe出的样本名称
+     */
+    private final Set<String> sampleNames;
+
+    private MetricContexts(List<MetricContext> contexts, Map<MetricContext, SharedQuery> sharedQueries) {
+        this.contexts = contexts;
+        this.sharedQueries = sharedQueries;
+        Set<String> names = new HashSet<>();
+        for (MetricContext metricContext : contexts) {
+            names.addAll(Arrays.asList(metricContext.describe().getNames()));
+        }
+        this.sampleNames = Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * 将使用同一采集器、excuteSql相同且刷新间隔相同的非增量指标绑定到同一个共享查询,同一采集周期内只执行一次查询
+     */
+    static MetricContexts bind(List<MetricContext> metricContexts) {
+        Map<ICollector, Map<List<Object>, List<MetricContext>>> groups = new IdentityHashMap<>();
+        for (MetricContext metricContext : metricContexts) {
+            String excuteSql = metricContext.config.getExcuteSql();
+            if(metricContext.incrementalState != null || excuteSql == null || "".equals(excuteSql.trim())){
+                continue;
+            }
+            groups.computeIfAbsent(metricContext.collector, k -> new LinkedHashMap<>())
+                    .computeIfAbsent(Arrays.asList(excuteSql.trim(), metricContext.config.getRefreshInterval()), k -> Lists.newArrayList())
+                    .add(metricContext);
+        }
+        Map<MetricContext, SharedQuery> sharedQueries = new IdentityHashMap<>();
+        for (Map<List<Object>, List<MetricContext>> collectorGroups : groups.values()) {
+            for (List<MetricContext> members : collectorGroups.values()) {
+                if(members.size() < 2){
+                    continue;
+                }
+                SharedQuery sharedQuery = new SharedQuery(members.get(0).collector, members.get(0).config.getExcuteSql(), members);
+                for (MetricContext member : members) {
+                    sharedQueries.put(member, sharedQuery);
+                }
+            }
+        }
+        return new MetricContexts(Collections.unmodifiableList(Lists.newArrayList(metricContexts)), sharedQueries);
+    }
+
+    /**
+     * 指标绑定的共享查询,不与其他指标共享查询时为null
+     */
+    SharedQuery sharedQuery(MetricContext metricContext) {
+        return this.sharedQueries.get(metricContext);
+    }
+
+    /**
+     * 各指标describe出的样本名称,不可修改
+     */
+    Set<String> sampleNames() {
+        return this.sampleNames;
+    }
+
+    @Override
+    public MetricContext get(int index) {
+        return this.contexts.get(index);
+    }
+
+    @Override
+    public int size() {
+        return this.contexts.size();
+    }
+}
@@ -0,0 +1,73 @@
+package com.zkyne.business.collector;
+
+import com.zkyne.business.config.ExporterConfigOptions.MetricConfigOptions;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.PropertiesPropertySourceLoader;
+import org.springframework.boot.env.PropertySourceLoader;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @className: MetricDefinitionsFile
+ * @description: 热加载的指标定义文件,.yml/.yaml按yaml解析,其余按properties解析,
+ * 与spring配置绑定ExporterConfigOptions时使用相同的前缀与绑定规则,文件内容可直接取自应用配置中的metrics部分
+ * @author: zkyne
+ * @date: 2026/10/18 20:40
+ * @see <a href=""></a>
+ */
+final class MetricDefinitionsFile {
+
+    private static final String METRICS_PREFIX = "spring.business.exporter.metrics";
+
+    private final Path path;
+    /**
+     * 最近一次加载时文件的修改时间,文件不存在时为-1
+     */
+    private long lastModified = -1L;
+
+    MetricDefinitionsFile(Path path) {
+        this.path = path;
+    }
+
+    Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * 文件修改时间与上一次加载时不同时返回true,文件被删除不视为变化
+     */
+    boolean isModified() throws IOException {
+        if(!Files.isRegularFile(this.path)){
+            return false;
+        }
+        return Files.getLastModifiedTime(this.path).toMillis() != this.lastModified;
+    }
+
+    /**
+     * 读取文件中的指标定义,key为配置中的指标key;文件不存在时返回空,解析失败时同样记录修改时间,文件再次修改前不重复解析
+     */
+    Map<String, MetricConfigOptions> load() throws IOException {
+        if(!Files.isRegularFile(this.path)){
+            return Collections.emptyMap();
+        }
+        this.lastModified = Files.getLastModifiedTime(this.path).toMillis();
+        String fileName = this.path.getFileName().toString().toLowerCase();
+        PropertySourceLoader loader = fileName.endsWith(".yml") || fileName.endsWith(".yaml")
+                ? new YamlPropertySourceLoader() : new PropertiesPropertySourceLoader();
+        List<PropertySource<?>> propertySources = loader.load(this.path.toString(), new FileSystemResource(this.path));
+        Map<String, MetricConfigOptions> metrics = new Binder(ConfigurationPropertySources.from(propertySources))
+                .bind(METRICS_PREFIX, Bindable.mapOf(String.class, MetricConfigOptions.class))
+                .orElse(Collections.emptyMap());
+        return metrics;
+    }
+}
@@ -0,0 +1,128 @@
+package com.zkyne.business.collector;
+
+import com.google.common.collect.Lists;
+import io.prometheus.client.Collector.MetricFamilySamples;
+import io.prometheus.client.Collector.MetricFamilySamples.Sample;
+import io.prometheus.client.Collector.Type;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @className: MetricSamplesBuilder
+ * @description: 将接收到的样本直接构建为指标样本集合,所有样本共享同一个label名称列表;不聚合的指标每行输出一个样本,
+ * 无论使用序列表、序列数上限还是逐个保存样本,label组合重复的行都使本次构建失败,超出序列数上限被合并到溢出序列的行除外
+ * @author: zkyne
+ * @date: 2026/10/18 11:20
+ * @see <a href=""></a>
+ */
+class MetricSamplesBuilder implements FamilySamplesBuilder {
+
+    private final String name;
+
+    private final Type type;
+
+    private final String help;
+
+    private final String sampleName;
+
+    private final List<String> tagKeys;
+
+    private final List<Sample> samples;
+    /**
+     * 配置了序列数上限时使用,样本不再逐个保存
+     */
+    private final TopKSeriesSketch sketch;
+    /**
+     * 跨刷新复用的序列表,指标没有序列表或序列表正被其他刷新更新时为null,此时每次构建新的样本
+     */
+    private final SeriesTable seriesTable;
+    /**
+     * 逐个保存样本时已出现的label组合,用于检测重复
+     */
+    private final Set<List<String>> tagValuesSeen;
+
+    private boolean released;
+
+    private long rows;
+
+    MetricSamplesBuilder(MetricContext metricContext) {
+        this.name = metricContext.getName();
+        this.type = metricContext.type;
+        this.help = metricContext.config.getHelp();
+        this.sampleName = metricContext.sampleName;
+        this.tagKeys = metricContext.tagKeys;
+        this.sketch = metricContext.maxSeries > 0 && !this.tagKeys.isEmpty() ? new TopKSeriesSketch(metricContext.maxSeries - 1) : null;
+        SeriesTable table = this.sketch == null ? metricContext.seriesTable : null;
+        this.seriesTable = table != null && table.tryAcquire() ? table : null;
+        this.samples = this.sketch == null && this.seriesTable == null ? Lists.newArrayList() : null;
+        this.tagValuesSeen = this.samples == null ? null : new HashSet<>();
+    }
+
+    /**
+     * 接收的label值是否只在本次调用中使用,为true时调用方可以复用同一个label值列表
+     */
+    boolean copiesTagValues() {
+        return this.seriesTable != null;
+    }
+
+    @Override
+    public void accept(List<String> tagValues, double value) {
+        this.rows++;
+        if(this.sketch != null){
+            if(this.sketch.contains(tagValues)){
+                throw duplicateTagValues(tagValues);
+            }
+            this.sketch.add(tagValues, value);
+        }else if(this.seriesTable != null){
+            if(!this.seriesTable.update(tagValues, value)){
+                throw duplicateTagValues(tagValues);
+            }
+        }else{
+            if(!this.tagValuesSeen.add(tagValues)){
+                throw duplicateTagValues(tagValues);
+            }
+            this.samples.add(new Sample(this.sampleName, this.tagKeys, tagValues, value));
+        }
+    }
+
+    private IllegalStateException duplicateTagValues(List<String> tagValues) {
+        return new IllegalStateException("Exporter collect metric " + this.name + " error, duplicate label values " + tagValues
+                + " for tagKeys " + this.tagKeys + ", configure aggregation to merge rows with the same label values");
+    }
+
+    @Override
+    public long rows() {
+        return this.rows;
+    }
+
+    @Override
+    public long overflow() {
+        return this.sketch == null ? 0L : this.sketch.evictions();
+    }
+
+    @Override
+    public MetricFamilySamples build() {
+        List<Sample> builtSamples;
+        if(this.seriesTable != null){
+            this.released = true;
+            builtSamples = this.seriesTable.publish();
+        }else{
+            builtSamples = this.sketch == null ? Collections.unmodifiableList(this.samples) : this.sketch.samples(this.sampleName, this.tagKeys);
+        }
+        if(builtSamples.isEmpty()){
+            return null;
+        }
+        return new MetricFamilySamples(this.name, this.type, this.help, builtSamples);
+    }
+
+    @Override
+    public void release() {
+        if(this.seriesTable != null && !this.released){
+            this.released = true;
+            this.seriesTable.release();
+        }
+    }
+}
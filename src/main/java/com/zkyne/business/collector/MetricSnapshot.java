@@ -0,0 +1,44 @@
+package com.zkyne.business.collector;
+
+import io.prometheus.client.Collector.MetricFamilySamples;
+
+/**
+ * @className: MetricSnapshot
+ * @description: 指标一次采集完成后的不可变快照
+ * @author: zkyne
+ * @date: 2026/10/18 15:10
+ * @see <a href=""></a>
+ */
+final class MetricSnapshot {
+    /**
+     * 采集结果,无数据时为null
+     */
+    final MetricFamilySamples familySamples;
+    /**
+     * 采集完成时间
+     */
+    final long collectTime;
+    /**
+     * 是否从持久化文件恢复,恢复的快照只作为采集失败时的兜底,不代替采集
+     */
+    final boolean restored;
+
+    MetricSnapshot(MetricFamilySamples familySamples, long collectTime) {
+        this(familySamples, collectTime, false);
+    }
+
+    MetricSnapshot(MetricFamilySamples familySamples, long collectTime, boolean restored) {
+        this.familySamples = familySamples;
+        this.collectTime = collectTime;
+        this.restored = restored;
+    }
+
+    /**
+     * 是否可以代替一次采集直接复用:本进程采集完成且距今不超过maxStaleness;
+     * 恢复的快照以及采集时间晚于当前时间(时钟回拨)的快照不复用
+     */
+    boolean isFresh(long now, long maxStaleness) {
+        long age = now - this.collectTime;
+        return maxStaleness > 0 && !this.restored && age >= 0 && age <= maxStaleness;
+    }
+}
@@ -0,0 +1,145 @@
+package com.zkyne.business.collector;
+
+/**
+ * @className: QuantileSketch
+ * @description: 相对误差有界的分位数草图(DDSketch),按对数间隔将取值映射到桶中只记录各桶计数,分位值的相对误差不超过relativeAccuracy;
+ * 桶数超过maxBins时合并绝对值最小的桶,内存有界
+ * @author: zkyne
+ * @date: 2026/10/18 17:10
+ * @see <a href=""></a>
+ */
+final class QuantileSketch {
+
+    private static final int DEFAULT_MAX_BINS = 2048;
+
+    private final double gamma;
+
+    private final double logGamma;
+
+    private final Store positives;
+
+    private final Store negatives;
+
+    private long zeroCount;
+
+    private long count;
+
+    QuantileSketch(double relativeAccuracy) {
+        this(relativeAccuracy, DEFAULT_MAX_BINS);
+    }
+
+    QuantileSketch(double relativeAccuracy, int maxBins) {
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(this.gamma);
+        this.positives = new Store(maxBins);
+        this.negatives = new Store(maxBins);
+    }
+
+    void add(double value) {
+        if(Double.isNaN(value)){
+            return;
+        }
+        if(value >= Double.MIN_NORMAL){
+            this.positives.add(index(value), 1L);
+        }else if(value <= -Double.MIN_NORMAL){
+            this.negatives.add(index(-value), 1L);
+        }else{
+            this.zeroCount++;
+        }
+        this.count++;
+    }
+
+    long count() {
+        return this.count;
+    }
+
+    /**
+     * 分位值,无数据时返回NaN
+     */
+    double quantile(double quantile) {
+        if(this.count == 0){
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (this.count - 1));
+        long seen = 0L;
+        for (int i = this.negatives.counts.length - 1; i >= 0; i--) {
+            seen += this.negatives.counts[i];
+            if(seen > rank){
+                return -value(i + this.negatives.offset);
+            }
+        }
+        seen += this.zeroCount;
+        if(seen > rank){
+            return 0.0D;
+        }
+        for (int i = 0; i < this.positives.counts.length; i++) {
+            seen += this.positives.counts[i];
+            if(seen > rank){
+                return value(i + this.positives.offset);
+            }
+        }
+        return value(this.positives.offset + this.positives.counts.length - 1);
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / this.logGamma);
+    }
+
+    private double value(int index) {
+        return 2 * Math.pow(this.gamma, index) / (1 + this.gamma);
+    }
+
+    /**
+     * 连续下标的桶计数,counts[i]对应下标offset+i的桶
+     */
+    private static final class Store {
+
+        private final int maxBins;
+
+        private long[] counts = new long[0];
+
+        private int offset;
+
+        private Store(int maxBins) {
+            this.maxBins = maxBins;
+        }
+
+        private void add(int index, long increment) {
+            if(this.counts.length == 0){
+                this.counts = new long[16];
+                this.offset = index - 8;
+            }else if(index < this.offset || index >= this.offset + this.counts.length){
+                index = extend(index);
+            }
+            this.counts[index - this.offset] += increment;
+        }
+
+        /**
+         * 扩展下标范围以包含index,范围按已有计数的桶计算,不含数组中未使用的空间;范围超过maxBins时将最小的桶合并到范围内最小的桶,
+         * 扩容的空余空间留在扩展的一侧,返回实际计数的下标
+         */
+        private int extend(int index) {
+            int first = 0;
+            int last = this.counts.length - 1;
+            while (first < last && this.counts[first] == 0) {
+                first++;
+            }
+            while (last > first && this.counts[last] == 0) {
+                last--;
+            }
+            int low = Math.min(this.offset + first, index);
+            int high = Math.max(this.offset + last, index);
+            if(high - low + 1 > this.maxBins){
+                low = high - this.maxBins + 1;
+            }
+            long[] extended = new long[Math.min(this.maxBins, Math.max(high - low + 1, this.counts.length * 2))];
+            int extendedOffset = index < this.offset ? high - extended.length + 1 : low;
+            for (int i = first; i <= last; i++) {
+                extended[Math.max(this.offset + i, low) - extendedOffset] += this.counts[i];
+            }
+            this.counts = extended;
+            this.offset = extendedOffset;
+            return Math.max(index, low);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.zkyne.business.collector;
+
+import com.zkyne.business.config.ExporterConfigOptions.MetricConfigOptions;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.reflect.Constructor;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * @className: ReflectiveCollectorFactory
+ * @description: 默认采集器工厂,未启用自定义采集器时通过JdbcTemplate构造方法创建,否则通过无参构造方法创建;
+ * 配置了查询超时且JdbcTemplate未设置查询超时时,采集器使用设置了该查询超时的JdbcTemplate副本,不修改调用方传入的JdbcTemplate
+ * @author: zkyne
+ * @date: 2026/10/18 10:15
+ * @see <a href=""></a>
+ */
+public class ReflectiveCollectorFactory implements CollectorFactory {
+
+    private final JdbcTemplate jdbcTemplate;
+    /**
+     * 命名数据源的JdbcTemplate,key为数据源名称
+     */
+    private final Map<String, JdbcTemplate> jdbcTemplates;
+    /**
+     * 查询超时(毫秒),0为不设置
+     */
+    private final long queryTimeout;
+
+    public ReflectiveCollectorFactory(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, Collections.emptyMap());
+    }
+
+    public ReflectiveCollectorFactory(JdbcTemplate jdbcTemplate, Map<String, JdbcTemplate> jdbcTemplates) {
+        this(jdbcTemplate, jdbcTemplates, 0L);
+    }
+
+    public ReflectiveCollectorFactory(JdbcTemplate jdbcTemplate, Map<String, JdbcTemplate> jdbcTemplates, long queryTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jdbcTemplates = jdbcTemplates;
+        this.queryTimeout = queryTimeout;
+    }
+
+    @Override
+    public ICollector create(MetricConfigOptions metricConfig) throws Exception {
+        if(!metricConfig.isCustomCollectorEnabled()){
+            Constructor<? extends ICollector> constructor =  metricConfig.getCustomCollector().getDeclaredConstructor(JdbcTemplate.class);
+            //设置允许访问，防止private修饰的构造方法
+            constructor.setAccessible(true);
+            String datasource = metricConfig.getDatasource();
+            return constructor.newInstance(withQueryTimeout(datasource == null ? this.jdbcTemplate : this.jdbcTemplates.get(datasource)));
+        }
+        Constructor<? extends ICollector> constructor =  metricConfig.getCustomCollector().getDeclaredConstructor();
+        //设置允许访问，防止private修饰的构造方法
+        constructor.setAccessible(true);
+        return constructor.newInstance();
+    }
+
+    /**
+     * 返回设置了查询超时的JdbcTemplate副本,超时按秒向上取整;未配置查询超时或JdbcTemplate已设置查询超时时原样返回
+     */
+    private JdbcTemplate withQueryTimeout(JdbcTemplate jdbcTemplate) {
+        if(jdbcTemplate == null || this.queryTimeout <= 0 || jdbcTemplate.getQueryTimeout() > 0){
+            return jdbcTemplate;
+        }
+        JdbcTemplate copy = new JdbcTemplate();
+        copy.setDataSource(jdbcTemplate.getDataSource());
+        copy.setExceptionTranslator(jdbcTemplate.getExceptionTranslator());
+        copy.setIgnoreWarnings(jdbcTemplate.isIgnoreWarnings());
+        copy.setFetchSize(jdbcTemplate.getFetchSize());
+        copy.setMaxRows(jdbcTemplate.getMaxRows());
+        copy.setSkipResultsProcessing(jdbcTemplate.isSkipResultsProcessing());
+        copy.setSkipUndeclaredResults(jdbcTemplate.isSkipUndeclaredResults());
+        copy.setResultsMapCaseInsensitive(jdbcTemplate.isResultsMapCaseInsensitive());
+        copy.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, (this.queryTimeout + 999L) / 1000L));
+        return copy;
+    }
+}
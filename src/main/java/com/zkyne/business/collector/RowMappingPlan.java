@@ -0,0 +1,188 @@
+package com.zkyne.business.collector;
+
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * @className: RowMappingPlan
+ * @description: 指标的行映射计划,根据结果集元数据编译一次,记录label列与指标值列的下标及按列类型特化的取值方式,
+ * 结果集的列名与列类型不变时在各次采集之间复用
+ * @author: zkyne
+ * @date: 2026/10/18 13:40
+ * @see <a href=""></a>
+ */
+final class RowMappingPlan {
+
+    private static final TagExtractor STRING_TAG = (rs, index) -> {
+        String value = rs.getString(index);
+        return value == null ? "" : value;
+    };
+
+    private static final TagExtractor TIMESTAMP_TAG = (rs, index) -> SampleValues.toTagValue(rs.getTimestamp(index));
+
+    private static final TagExtractor OBJECT_TAG = (rs, index) -> SampleValues.toTagValue(JdbcUtils.getResultSetValue(rs, index));
+
+    private static final TagExtractor MISSING_TAG = (rs, index) -> "";
+
+    private static final ValueExtractor LONG_VALUE = (rs, index) -> {
+        long value = rs.getLong(index);
+        return rs.wasNull() ? 0.0D : value;
+    };
+
+    private static final ValueExtractor DOUBLE_VALUE = (rs, index) -> {
+        double value = rs.getDouble(index);
+        return rs.wasNull() ? 0.0D : value;
+    };
+
+    private static final ValueExtractor TIMESTAMP_VALUE = (rs, index) -> {
+        Timestamp value = rs.getTimestamp(index);
+        return value == null ? 0.0D : value.getTime();
+    };
+
+    private static final ValueExtractor OBJECT_VALUE = (rs, index) -> SampleValues.toValue(JdbcUtils.getResultSetValue(rs, index));
+
+    private static final ValueExtractor MISSING_VALUE = (rs, index) -> 0.0D;
+
+    private static final ValueExtractor CONSTANT_VALUE = (rs, index) -> 1.0D;
+
+    private final String[] columnLabels;
+
+    private final int[] columnTypes;
+
+    private final int[] tagIndexes;
+
+    private final TagExtractor[] tagExtractors;
+
+    private final int valueIndex;
+
+    private final ValueExtractor valueExtractor;
+
+    private final int watermarkIndex;
+
+    private RowMappingPlan(ResultSetMetaData metaData, List<String> tagKeys, String valueKey, String watermarkKey) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        this.columnLabels = new String[columnCount];
+        this.columnTypes = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            this.columnLabels[i] = JdbcUtils.lookupColumnName(metaData, i + 1);
+            this.columnTypes[i] = metaData.getColumnType(i + 1);
+        }
+        this.tagIndexes = new int[tagKeys.size()];
+        this.tagExtractors = new TagExtractor[tagKeys.size()];
+        for (int i = 0; i < this.tagIndexes.length; i++) {
+            this.tagIndexes[i] = columnIndex(tagKeys.get(i));
+            this.tagExtractors[i] = this.tagIndexes[i] > 0 ? tagExtractor(this.columnTypes[this.tagIndexes[i] - 1]) : MISSING_TAG;
+        }
+        if(valueKey == null || "".equals(valueKey)){
+            this.valueIndex = 0;
+            this.valueExtractor = CONSTANT_VALUE;
+        }else{
+            this.valueIndex = columnIndex(valueKey);
+            this.valueExtractor = this.valueIndex > 0 ? valueExtractor(this.columnTypes[this.valueIndex - 1]) : MISSING_VALUE;
+        }
+        this.watermarkIndex = watermarkKey == null ? 0 : columnIndex(watermarkKey);
+    }
+
+    static RowMappingPlan compile(ResultSetMetaData metaData, List<String> tagKeys, String valueKey, String watermarkKey) throws SQLException {
+        return new RowMappingPlan(metaData, tagKeys, valueKey, watermarkKey);
+    }
+
+    /**
+     * 结果集的列名与列类型是否与编译时一致
+     */
+    boolean matches(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        if(columnCount != this.columnLabels.length){
+            return false;
+        }
+        for (int i = 0; i < columnCount; i++) {
+            if(this.columnTypes[i] != metaData.getColumnType(i + 1)
+                    || !this.columnLabels[i].equals(JdbcUtils.lookupColumnName(metaData, i + 1))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int tagCount() {
+        return this.tagIndexes.length;
+    }
+
+    String tagValue(ResultSet rs, int tagIndex) throws SQLException {
+        return this.tagExtractors[tagIndex].extract(rs, this.tagIndexes[tagIndex]);
+    }
+
+    double value(ResultSet rs) throws SQLException {
+        return this.valueExtractor.extract(rs, this.valueIndex);
+    }
+
+    /**
+     * 增量采集的水位列的值,未配置或结果集中不存在水位列时返回null
+     */
+    Object watermark(ResultSet rs) throws SQLException {
+        return this.watermarkIndex > 0 ? JdbcUtils.getResultSetValue(rs, this.watermarkIndex) : null;
+    }
+
+    private int columnIndex(String key) {
+        for (int i = 0; i < this.columnLabels.length; i++) {
+            if(key.equalsIgnoreCase(this.columnLabels[i])){
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static TagExtractor tagExtractor(int columnType) {
+        switch (columnType) {
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return STRING_TAG;
+            case Types.DATE:
+            case Types.TIMESTAMP:
+                return TIMESTAMP_TAG;
+            default:
+                return OBJECT_TAG;
+        }
+    }
+
+    private static ValueExtractor valueExtractor(int columnType) {
+        switch (columnType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return LONG_VALUE;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return DOUBLE_VALUE;
+            case Types.DATE:
+            case Types.TIMESTAMP:
+                return TIMESTAMP_VALUE;
+            default:
+                return OBJECT_VALUE;
+        }
+    }
+
+    @FunctionalInterface
+    private interface TagExtractor {
+        String extract(ResultSet rs, int index) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface ValueExtractor {
+        double extract(ResultSet rs, int index) throws SQLException;
+    }
+}
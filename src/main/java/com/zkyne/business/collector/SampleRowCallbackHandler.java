@@ -0,0 +1,74 @@
+package com.zkyne.business.collector;
+
+import com.google.common.collect.Lists;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * @className: SampleRowCallbackHandler
+ * @description: 逐行读取查询结果并推送到样本接收器,首行时取指标缓存的行映射计划,结果集结构变化时重新编译
+ * @author: zkyne
+ * @date: 2026/10/18 11:12
+ * @see <a href=""></a>
+ */
+class SampleRowCallbackHandler implements RowCallbackHandler {
+
+    private final MetricContext metricContext;
+
+    private final SampleSink sampleSink;
+    /**
+     * 增量采集时的当前批次,用于记录水位,非增量采集时为null
+     */
+    private final IncrementalState.Batch batch;
+    /**
+     * 接收器只在调用期间使用label值时逐行复用的label值列表,否则为null
+     */
+    private final List<String> reusedTagValues;
+
+    private RowMappingPlan plan;
+
+    SampleRowCallbackHandler(MetricContext metricContext, SampleSink sampleSink) {
+        this.metricContext = metricContext;
+        this.sampleSink = sampleSink;
+        this.batch = sampleSink instanceof IncrementalState.Batch ? (IncrementalState.Batch) sampleSink : null;
+        this.reusedTagValues = sampleSink instanceof MetricSamplesBuilder && ((MetricSamplesBuilder) sampleSink).copiesTagValues()
+                ? Lists.newArrayListWithCapacity(metricContext.tagKeys.size()) : null;
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        if(this.plan == null){
+            this.plan = resolvePlan(rs.getMetaData());
+        }
+        int tagCount = this.plan.tagCount();
+        List<String> tagValues;
+        if(this.reusedTagValues != null){
+            tagValues = this.reusedTagValues;
+            tagValues.clear();
+        }else{
+            tagValues = Lists.newArrayListWithCapacity(tagCount);
+        }
+        for (int i = 0; i < tagCount; i++) {
+            tagValues.add(this.plan.tagValue(rs, i));
+        }
+        this.sampleSink.accept(tagValues, this.plan.value(rs));
+        if(this.batch != null){
+            this.batch.observeWatermark(this.plan.watermark(rs));
+        }
+    }
+
+    private RowMappingPlan resolvePlan(ResultSetMetaData metaData) throws SQLException {
+        RowMappingPlan cachedPlan = this.metricContext.mappingPlan;
+        if(cachedPlan != null && cachedPlan.matches(metaData)){
+            return cachedPlan;
+        }
+        RowMappingPlan compiledPlan = RowMappingPlan.compile(metaData, this.metricContext.tagKeys, this.metricContext.config.getValueKey(),
+                this.metricContext.incrementalState == null ? null : this.metricContext.config.getWatermarkKey());
+        this.metricContext.mappingPlan = compiledPlan;
+        return compiledPlan;
+    }
+}
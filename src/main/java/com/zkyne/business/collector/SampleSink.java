@@ -0,0 +1,19 @@
+package com.zkyne.business.collector;
+
+import java.util.List;
+
+/**
+ * @className: SampleSink
+ * @description: 指标样本接收器,采集到的每一行数据转换为label值与指标值后推送到该接收器
+ * @author: zkyne
+ * @date: 2026/10/18 11:05
+ * @see <a href=""></a>
+ */
+public interface SampleSink {
+    /**
+     * 接收一个样本
+     * @param tagValues label值,顺序与指标的tagKeys一致
+     * @param value 指标值
+     */
+    void accept(List<String> tagValues, double value);
+}
@@ -0,0 +1,57 @@
+package com.zkyne.business.collector;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+/**
+ * @className: SampleValues
+ * @description: 源数据值到label值、指标值的转换
+ * @author: zkyne
+ * @date: 2026/10/18 11:08
+ * @see <a href=""></a>
+ */
+final class SampleValues {
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private SampleValues() {
+    }
+
+    /**
+     * 转换为label值,日期格式化为yyyy-MM-dd HH:mm:ss,null转换为空字符串
+     */
+    static String toTagValue(Object tagValueObj) {
+        if(tagValueObj == null){
+            return "";
+        }
+        if(tagValueObj instanceof Date){
+            Date date = (Date) tagValueObj;
+            LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(date.getTime()), ZoneId.systemDefault());
+            return dateTime.format(DATE_TIME_FORMATTER);
+        }
+        return tagValueObj.toString();
+    }
+
+    /**
+     * 转换为指标值,数值直接取double,日期转换为毫秒时间戳,null转换为0
+     */
+    static double toValue(Object valueObj) {
+        if(valueObj == null){
+            return 0.0D;
+        }
+        if(valueObj instanceof Number){
+            return ((Number) valueObj).doubleValue();
+        }
+        String valueStr;
+        if(valueObj instanceof Date){
+            Date date = (Date) valueObj;
+            valueStr = date.getTime() + "";
+        }else{
+            valueStr = valueObj.toString();
+        }
+        return Double.parseDouble(valueStr);
+    }
+}
@@ -0,0 +1,349 @@
+package com.zkyne.business.collector;
+
+import com.zkyne.business.config.ExporterConfigOptions.PrometheusOptions;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @className: ScrapeConfigSync
+ * @description: 按各指标的采集耗时与刷新间隔生成prometheus采集配置,写入configPath目录下的<jobName>.json(file_sd targets)
+ * 与<jobName>.yml(scrape_configs片段,可通过scrape_config_files引入);基础job沿用配置的scrapeInterval/scrapeTimeout,
+ * 开启splitJobsEnabled时数据变化慢于scrapeInterval或查询在scrapeTimeout内完成不了的指标拆分到单独的job,以name[]参数只拉取这些指标,
+ * 此时基础job也只能以name[]拉取其余指标,registry中的其他collector不再被拉取;内容未变化时不重写文件
+ * @author: zkyne
+ * @date: 2026/10/18 21:20
+ * @see <a href=""></a>
+ */
+final class ScrapeConfigSync {
+    /**
+     * 超时时间相对采集耗时的余量
+     */
+    private static final double TIMEOUT_HEADROOM = 1.5D;
+    /**
+     * 生成的采集间隔与超时向上取整到的档位(秒),避免耗时小幅波动导致配置反复变化
+     */
+    private static final long[] DURATION_STEPS = {1, 2, 5, 10, 15, 20, 30, 45, 60, 90, 120, 180, 300, 600, 900, 1200, 1800, 3600};
+    /**
+     * 拆分job的采集间隔上限(毫秒):prometheus在5分钟内没有新样本时将序列标记为陈旧,间隔过长的job在图表与告警中会出现断点,
+     * 数据变化更慢的指标也按该间隔采集;配置的scrapeInterval更大或查询耗时需要更长的超时时不受此限制
+     */
+    private static final long MAX_SPLIT_INTERVAL = TimeUnit.MINUTES.toMillis(2);
+
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+)(ms|s|m|h|d|w|y)");
+
+    private final PrometheusOptions prometheus;
+
+    private final Path targetsFile;
+
+    private final Path scrapeConfigFile;
+
+    private final List<String> targets;
+
+    private final String metricsPath;
+    /**
+     * 拆分job后基础job额外拉取的exporter自身指标名称
+     */
+    private final Set<String> exporterNames;
+
+    private final long scrapeInterval;
+
+    private final long scrapeTimeout;
+
+    private String writtenTargets;
+
+    private String writtenScrapeConfig;
+
+    ScrapeConfigSync(PrometheusOptions prometheus, Path configPath, List<String> targets, String metricsPath, Set<String> exporterNames) {
+        this.prometheus = prometheus;
+        this.targetsFile = configPath.resolve(prometheus.getJobName() + ".json");
+        this.scrapeConfigFile = configPath.resolve(prometheus.getJobName() + ".yml");
+        this.targets = targets;
+        this.metricsPath = metricsPath;
+        this.exporterNames = exporterNames;
+        this.scrapeInterval = parseDuration(prometheus.getScrapeInterval());
+        this.scrapeTimeout = parseDuration(prometheus.getScrapeTimeout());
+        if(this.scrapeTimeout > this.scrapeInterval){
+            throw new IllegalArgumentException("scrapeTimeout " + prometheus.getScrapeTimeout() + " must not be greater than scrapeInterval " + prometheus.getScrapeInterval());
+        }
+    }
+
+    /**
+     * 按当前指标重新生成采集配置,内容变化时写入文件并返回true
+     * @param metricContexts 当前生效的指标
+     * @param maxStaleness 同步采集结果的最大复用时间(毫秒)
+     * @param parallel 是否并行采集,并行时一次拉取的耗时取各指标耗时的最大值,否则取总和
+     */
+    synchronized boolean sync(List<MetricContext> metricContexts, long maxStaleness, boolean parallel) throws IOException {
+        String targetsContent = renderTargets();
+        String scrapeConfigContent = renderScrapeConfigs(plan(metricContexts, maxStaleness, parallel));
+        boolean changed = false;
+        if(!targetsContent.equals(this.writtenTargets)){
+            write(this.targetsFile, targetsContent);
+            this.writtenTargets = targetsContent;
+            changed = true;
+        }
+        if(!scrapeConfigContent.equals(this.writtenScrapeConfig)){
+            write(this.scrapeConfigFile, scrapeConfigContent);
+            this.writtenScrapeConfig = scrapeConfigContent;
+            changed = true;
+        }
+        return changed;
+    }
+
+    Path getScrapeConfigFile() {
+        return this.scrapeConfigFile;
+    }
+
+    /**
+     * 划分采集job:先按数据变化间隔与单个指标所需的超时拆出不适合基础job的指标,基础job的总耗时仍超出scrapeTimeout时
+     * 依次拆出耗时最大的指标;拆出的指标按采集间隔与超时档位分组,每组的超时由组内的总耗时决定
+     */
+    List<ScrapeJob> plan(List<MetricContext> metricContexts, long maxStaleness, boolean parallel) {
+        List<ScrapeJob> jobs = new ArrayList<>();
+        if(!this.prometheus.isSplitJobsEnabled()){
+            jobs.add(new ScrapeJob(this.prometheus.getJobName(), this.prometheus.getScrapeInterval(), this.prometheus.getScrapeTimeout(), null));
+            return jobs;
+        }
+        List<MetricContext> base = new ArrayList<>();
+        Map<List<Long>, List<MetricContext>> groups = new TreeMap<>(Comparator.<List<Long>>comparingLong(key -> key.get(0)).thenComparingLong(key -> key.get(1)));
+        for (MetricContext metricContext : metricContexts) {
+            long dataInterval = dataInterval(metricContext, maxStaleness);
+            long interval = dataInterval > this.scrapeInterval
+                    ? Math.min(roundUp(dataInterval), Math.max(this.scrapeInterval, MAX_SPLIT_INTERVAL)) : this.scrapeInterval;
+            long timeout = requiredTimeout(scrapeCost(metricContext));
+            if(interval <= this.scrapeInterval && timeout <= this.scrapeTimeout){
+                base.add(metricContext);
+            }else{
+                addToGroup(groups, metricContext, interval, timeout);
+            }
+        }
+        base.sort(Comparator.comparingLong(ScrapeConfigSync::scrapeCost).reversed());
+        while (!base.isEmpty() && requiredTimeout(totalCost(base, parallel)) > this.scrapeTimeout) {
+            MetricContext expensive = base.remove(0);
+            addToGroup(groups, expensive, this.scrapeInterval, requiredTimeout(scrapeCost(expensive)));
+        }
+        if(groups.isEmpty()){
+            jobs.add(new ScrapeJob(this.prometheus.getJobName(), this.prometheus.getScrapeInterval(), this.prometheus.getScrapeTimeout(), null));
+            return jobs;
+        }
+        Set<String> baseNames = new LinkedHashSet<>();
+        for (MetricContext metricContext : base) {
+            baseNames.addAll(Arrays.asList(metricContext.describe().getNames()));
+        }
+        baseNames.addAll(this.exporterNames);
+        jobs.add(new ScrapeJob(this.prometheus.getJobName(), this.prometheus.getScrapeInterval(), this.prometheus.getScrapeTimeout(), baseNames));
+        for (Map.Entry<List<Long>, List<MetricContext>> group : groups.entrySet()) {
+            List<MetricContext> members = group.getValue();
+            long timeout = Math.max(this.scrapeTimeout, requiredTimeout(totalCost(members, parallel)));
+            long interval = Math.max(group.getKey().get(0), timeout);
+            Set<String> names = new LinkedHashSet<>();
+            for (MetricContext member : members) {
+                names.addAll(Arrays.asList(member.describe().getNames()));
+            }
+            jobs.add(new ScrapeJob(this.prometheus.getJobName() + "-" + formatDuration(interval) + "-" + formatDuration(timeout),
+                    formatDuration(interval), formatDuration(timeout), names));
+        }
+        return jobs;
+    }
+
+    private void addToGroup(Map<List<Long>, List<MetricContext>> groups, MetricContext metricContext, long interval, long timeout) {
+        List<Long> key = new ArrayList<>(2);
+        key.add(Math.max(interval, timeout));
+        key.add(Math.max(this.scrapeTimeout, timeout));
+        groups.computeIfAbsent(key, k -> new ArrayList<>()).add(metricContext);
+    }
+
+    /**
+     * 指标数据的变化间隔:配置了refreshInterval时为刷新间隔,否则为同步采集结果的最大复用时间
+     */
+    private static long dataInterval(MetricContext metricContext, long maxStaleness) {
+        long refreshInterval = metricContext.config.getRefreshInterval();
+        return refreshInterval > 0 ? refreshInterval : maxStaleness;
+    }
+
+    /**
+     * 一次拉取中该指标的耗时(毫秒),后台定时刷新的指标直接返回快照,不计入拉取耗时
+     */
+    private static long scrapeCost(MetricContext metricContext) {
+        if(metricContext.config.getRefreshInterval() > 0){
+            return 0L;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(metricContext.costNanos);
+    }
+
+    private static long totalCost(List<MetricContext> metricContexts, boolean parallel) {
+        long total = 0L;
+        for (MetricContext metricContext : metricContexts) {
+            long cost = scrapeCost(metricContext);
+            total = parallel ? Math.max(total, cost) : total + cost;
+        }
+        return total;
+    }
+
+    private static long requiredTimeout(long cost) {
+        return cost <= 0 ? 0L : roundUp((long) Math.ceil(cost * TIMEOUT_HEADROOM));
+    }
+
+    /**
+     * 毫秒数向上取整到采集间隔档位,超出最大档位时按小时向上取整
+     */
+    static long roundUp(long millis) {
+        long seconds = (millis + 999L) / 1000L;
+        for (long step : DURATION_STEPS) {
+            if(seconds <= step){
+                return TimeUnit.SECONDS.toMillis(step);
+            }
+        }
+        return TimeUnit.HOURS.toMillis((seconds + 3599L) / 3600L);
+    }
+
+    /**
+     * 解析prometheus格式的时间长度,如1m、15s、1h30m
+     */
+    static long parseDuration(String duration) {
+        if(duration == null || duration.trim().isEmpty()){
+            throw new IllegalArgumentException("duration must not be blank");
+        }
+        Matcher matcher = DURATION_PART.matcher(duration.trim());
+        long millis = 0L;
+        int end = 0;
+        while (matcher.find() && matcher.start() == end) {
+            long value = Long.parseLong(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "ms":
+                    millis += value;
+                    break;
+                case "s":
+                    millis += TimeUnit.SECONDS.toMillis(value);
+                    break;
+                case "m":
+                    millis += TimeUnit.MINUTES.toMillis(value);
+                    break;
+                case "h":
+                    millis += TimeUnit.HOURS.toMillis(value);
+                    break;
+                case "d":
+                    millis += TimeUnit.DAYS.toMillis(value);
+                    break;
+                case "w":
+                    millis += TimeUnit.DAYS.toMillis(value * 7L);
+                    break;
+                default:
+                    millis += TimeUnit.DAYS.toMillis(value * 365L);
+            }
+            end = matcher.end();
+        }
+        if(end == 0 || end != duration.trim().length() || millis <= 0){
+            throw new IllegalArgumentException("invalid prometheus duration " + duration);
+        }
+        return millis;
+    }
+
+    static String formatDuration(long millis) {
+        if(millis % TimeUnit.HOURS.toMillis(1) == 0){
+            return TimeUnit.MILLISECONDS.toHours(millis) + "h";
+        }
+        if(millis % TimeUnit.MINUTES.toMillis(1) == 0){
+            return TimeUnit.MILLISECONDS.toMinutes(millis) + "m";
+        }
+        if(millis % TimeUnit.SECONDS.toMillis(1) == 0){
+            return TimeUnit.MILLISECONDS.toSeconds(millis) + "s";
+        }
+        return millis + "ms";
+    }
+
+    private String renderTargets() {
+        StringBuilder json = new StringBuilder("[\n  {\n    \"targets\": [");
+        for (int i = 0; i < this.targets.size(); i++) {
+            json.append(i == 0 ? "" : ", ").append(quote(this.targets.get(i)));
+        }
+        json.append("],\n    \"labels\": {");
+        String namespace = this.prometheus.getNamespace();
+        if(namespace != null && !namespace.trim().isEmpty()){
+            json.append("\"namespace\": ").append(quote(namespace.trim()));
+        }
+        return json.append("}\n  }\n]\n").toString();
+    }
+
+    private String renderScrapeConfigs(List<ScrapeJob> jobs) {
+        StringBuilder yaml = new StringBuilder("# generated by business-exporter, changes will be overwritten\nscrape_configs:\n");
+        for (ScrapeJob job : jobs) {
+            yaml.append("  - job_name: ").append(quote(job.jobName)).append('\n');
+            yaml.append("    scrape_interval: ").append(job.scrapeInterval).append('\n');
+            yaml.append("    scrape_timeout: ").append(job.scrapeTimeout).append('\n');
+            yaml.append("    metrics_path: ").append(quote(this.metricsPath)).append('\n');
+            if(job.names != null){
+                yaml.append("    params:\n      name[]:\n");
+                for (String name : job.names) {
+                    yaml.append("        - ").append(quote(name)).append('\n');
+                }
+            }
+            yaml.append("    file_sd_configs:\n      - files:\n          - ").append(quote(this.targetsFile.toAbsolutePath().toString())).append('\n');
+        }
+        return yaml.toString();
+    }
+
+    /**
+     * 双引号字符串,同时是合法的json与yaml
+     */
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c == '"' || c == '\\'){
+                quoted.append('\\').append(c);
+            }else if(c < 0x20){
+                quoted.append(String.format("\\u%04x", (int) c));
+            }else{
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static void write(Path path, String content) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if(parent != null){
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 一个prometheus采集job,names为null时拉取全部指标
+     */
+    static final class ScrapeJob {
+
+        final String jobName;
+
+        final String scrapeInterval;
+
+        final String scrapeTimeout;
+
+        final Set<String> names;
+
+        ScrapeJob(String jobName, String scrapeInterval, String scrapeTimeout, Set<String> names) {
+            this.jobName = jobName;
+            this.scrapeInterval = scrapeInterval;
+            this.scrapeTimeout = scrapeTimeout;
+            this.names = names;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.zkyne.business.collector;
+
+import io.prometheus.client.Collector.MetricFamilySamples.Sample;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @className: SeriesTable
+ * @description: 单个指标跨刷新复用的序列表,以label值组合为key的开放寻址哈希表,指标值与最近一次出现的刷新代数保存在基本类型数组中;
+ * 每次刷新只原地更新指标值,新出现的label组合才复制保存,本次刷新未出现的序列不再输出,失效的序列过半时压缩回收;
+ * 指标值未变化的序列直接复用上一次的Sample,序列与值均未变化时复用上一次的样本列表,序列稳定时每次刷新几乎不产生新对象
+ * @author: zkyne
+ * @date: 2026/10/18 20:10
+ * @see <a href=""></a>
+ */
+final class SeriesTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String sampleName;
+
+    private final List<String> tagKeys;
+    /**
+     * 同一时刻只允许一次刷新更新该表
+     */
+    private final AtomicBoolean updating = new AtomicBoolean();
+    /**
+     * 哈希槽,保存条目下标+1,0表示空槽
+     */
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * 条目的label组合,通过tuple(int)读取
+     */
+    private Object[] tuples = new Object[INITIAL_CAPACITY];
+
+    private int[] hashes = new int[INITIAL_CAPACITY];
+
+    private double[] values = new double[INITIAL_CAPACITY];
+    /**
+     * 条目最近一次出现的刷新代数
+     */
+    private long[] generations = new long[INITIAL_CAPACITY];
+    /**
+     * 条目最近一次输出的样本,指标值未变化时复用
+     */
+    private Sample[] samples = new Sample[INITIAL_CAPACITY];
+
+    private int size;
+
+    private long generation;
+    /**
+     * 最近一次输出的样本列表对应的刷新代数,只在publish()时推进;失败放弃的刷新会留下更大的generation与条目代数,
+     * 判断序列是否在已输出列表中时必须与它比较,而不是与generation - 1比较
+     */
+    private long publishedGeneration;
+    /**
+     * 本次刷新是否有序列新出现或重新出现
+     */
+    private boolean seriesChanged;
+    /**
+     * 最近一次输出的样本列表
+     */
+    private List<Sample> published = Collections.emptyList();
+
+    SeriesTable(String sampleName, List<String> tagKeys) {
+        this.sampleName = sampleName;
+        this.tagKeys = tagKeys;
+    }
+
+    /**
+     * 开始一次刷新,已有刷新在更新该表时返回false
+     */
+    boolean tryAcquire() {
+        if(!this.updating.compareAndSet(false, true)){
+            return false;
+        }
+        this.generation++;
+        this.seriesChanged = false;
+        return true;
+    }
+
+    /**
+     * 放弃本次刷新,已输出的样本列表不受影响
+     */
+    void release() {
+        this.updating.set(false);
+    }
+
+    /**
+     * 更新label组合的指标值,同一次刷新中label组合重复出现时不更新并返回false
+     */
+    boolean update(List<String> tagValues, double value) {
+        int index = indexOf(tagValues);
+        if(this.generations[index] == this.generation){
+            return false;
+        }
+        if(this.generations[index] != this.publishedGeneration){
+            this.seriesChanged = true;
+        }
+        this.values[index] = value;
+        this.generations[index] = this.generation;
+        return true;
+    }
+
+    /**
+     * 结束本次刷新并返回本次出现的序列的样本,按label组合首次出现的顺序排列
+     */
+    List<Sample> publish() {
+        try {
+            int live = 0;
+            boolean changed = this.seriesChanged;
+            for (int i = 0; i < this.size; i++) {
+                if(this.generations[i] != this.generation){
+                    continue;
+                }
+                live++;
+                Sample sample = this.samples[i];
+                if(sample == null || Double.doubleToLongBits(sample.value) != Double.doubleToLongBits(this.values[i])){
+                    this.samples[i] = new Sample(this.sampleName, this.tagKeys, tuple(i), this.values[i]);
+                    changed = true;
+                }
+            }
+            this.publishedGeneration = this.generation;
+            if(!changed && live == this.published.size()){
+                return this.published;
+            }
+            List<Sample> liveSamples = new ArrayList<>(live);
+            for (int i = 0; i < this.size; i++) {
+                if(this.generations[i] == this.generation){
+                    liveSamples.add(this.samples[i]);
+                }
+            }
+            this.published = Collections.unmodifiableList(liveSamples);
+            int expired = this.size - live;
+            if(expired >= INITIAL_CAPACITY && expired * 2 >= this.size){
+                rebuild(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, live)) * 2), true);
+            }
+            return this.published;
+        } finally {
+            release();
+        }
+    }
+
+    private int indexOf(List<String> tuple) {
+        int hash = spread(tuple.hashCode());
+        int slot = probe(tuple, hash);
+        int entry = this.slots[slot] - 1;
+        if(entry >= 0){
+            return entry;
+        }
+        if(this.size == this.tuples.length){
+            rebuild(this.tuples.length * 2, false);
+            slot = probe(tuple, hash);
+        }
+        int index = this.size++;
+        this.tuples[index] = Collections.unmodifiableList(new ArrayList<>(tuple));
+        this.hashes[index] = hash;
+        this.generations[index] = Long.MIN_VALUE;
+        this.slots[slot] = index + 1;
+        return index;
+    }
+
+    /**
+     * 查找label组合所在的槽,不存在时返回应插入的空槽
+     */
+    private int probe(List<String> tuple, int hash) {
+        int mask = this.slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = this.slots[slot] - 1;
+            if(entry < 0 || (this.hashes[entry] == hash && this.tuples[entry].equals(tuple))){
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * 按新容量重建条目数组与哈希槽,liveOnly为true时只保留本次刷新出现的条目
+     */
+    private void rebuild(int capacity, boolean liveOnly) {
+        Object[] oldTuples = this.tuples;
+        int[] oldHashes = this.hashes;
+        double[] oldValues = this.values;
+        long[] oldGenerations = this.generations;
+        Sample[] oldSamples = this.samples;
+        int oldSize = this.size;
+        this.tuples = new Object[capacity];
+        this.hashes = new int[capacity];
+        this.values = new double[capacity];
+        this.generations = new long[capacity];
+        this.samples = new Sample[capacity];
+        this.slots = new int[capacity * 2];
+        this.size = 0;
+        int mask = this.slots.length - 1;
+        for (int i = 0; i < oldSize; i++) {
+            if(liveOnly && oldGenerations[i] != this.generation){
+                continue;
+            }
+            int index = this.size++;
+            this.tuples[index] = oldTuples[i];
+            this.hashes[index] = oldHashes[i];
+            this.values[index] = oldValues[i];
+            this.generations[index] = oldGenerations[i];
+            this.samples[index] = oldSamples[i];
+            int slot = oldHashes[i] & mask;
+            while (this.slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.slots[slot] = index + 1;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> tuple(int index) {
+        return (List<String>) this.tuples[index];
+    }
+}
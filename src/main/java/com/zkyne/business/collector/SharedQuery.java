@@ -0,0 +1,29 @@
+package com.zkyne.business.collector;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @className: SharedQuery
+ * @description: 共享查询,使用同一采集器且excuteSql相同的多个指标(如按相同字段分组的订单数与订单金额)在同一采集周期内只执行一次查询,
+ * 结果集只读取一遍,逐行分发给各指标各自的行映射计划构建样本
+ * @author: zkyne
+ * @date: 2026/10/18 16:05
+ * @see <a href=""></a>
+ */
+final class SharedQuery {
+
+    final ICollector collector;
+
+    final String excuteSql;
+    /**
+     * 共享该查询的指标,至少两个
+     */
+    final List<MetricContext> members;
+
+    SharedQuery(ICollector collector, String excuteSql, List<MetricContext> members) {
+        this.collector = collector;
+        this.excuteSql = excuteSql;
+        this.members = Collections.unmodifiableList(members);
+    }
+}
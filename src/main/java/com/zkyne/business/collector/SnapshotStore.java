@@ -0,0 +1,213 @@
+package com.zkyne.business.collector;
+
+import io.prometheus.client.Collector.MetricFamilySamples;
+import io.prometheus.client.Collector.MetricFamilySamples.Sample;
+import io.prometheus.client.Collector.Type;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @className: SnapshotStore
+ * @description: 指标快照的本地持久化,以紧凑的二进制格式写入文件,重启时读取快照;
+ * 字符串(样本名称、label名称与label值)在文件内去重,首次出现时写入内容,之后只写序号;
+ * 写入时先写临时文件再原子替换,进程在写入过程中退出也不会留下不完整的快照文件;读写都不保留文件映射,替换文件在各平台上都不会因文件被占用而失败;
+ * 恢复的快照标记为restored,不会在maxStaleness内被当作新的采集结果复用
+ * @author: zkyne
+ * @date: 2026/10/18 18:40
+ * @see <a href=""></a>
+ */
+final class SnapshotStore {
+
+    private static final int MAGIC = 0x42455853;
+
+    private static final int VERSION = 1;
+
+    private static final Type[] TYPES = Type.values();
+
+    private final Path path;
+
+    SnapshotStore(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * 写入各指标最近一次成功的快照,无快照或快照无数据的指标不写入
+     */
+    synchronized void save(List<MetricContext> metricContexts) throws IOException {
+        Encoder encoder = new Encoder();
+        List<MetricContext> persisted = new ArrayList<>();
+        for (MetricContext metricContext : metricContexts) {
+            MetricSnapshot snapshot = metricContext.snapshot;
+            if(snapshot != null && snapshot.familySamples != null){
+                persisted.add(metricContext);
+            }
+        }
+        encoder.out.writeInt(MAGIC);
+        encoder.out.writeInt(VERSION);
+        encoder.writeVarint(persisted.size());
+        for (MetricContext metricContext : persisted) {
+            MetricSnapshot snapshot = metricContext.snapshot;
+            MetricFamilySamples familySamples = snapshot.familySamples;
+            encoder.writeString(metricContext.getName());
+            encoder.out.writeByte(familySamples.type.ordinal());
+            encoder.writeString(familySamples.help);
+            encoder.out.writeLong(snapshot.collectTime);
+            encoder.writeVarint(familySamples.samples.size());
+            for (Sample sample : familySamples.samples) {
+                encoder.writeString(sample.name);
+                encoder.writeVarint(sample.labelNames.size());
+                for (int i = 0; i < sample.labelNames.size(); i++) {
+                    encoder.writeString(sample.labelNames.get(i));
+                    encoder.writeString(sample.labelValues.get(i));
+                }
+                encoder.out.writeDouble(sample.value);
+            }
+        }
+        encoder.out.flush();
+        Path parent = this.path.toAbsolutePath().getParent();
+        if(parent != null){
+            Files.createDirectories(parent);
+        }
+        Path temp = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.wrap(encoder.bytes.buffer(), 0, encoder.bytes.size());
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取文件中的快照,key为指标名称;文件不存在时返回空
+     */
+    Map<String, MetricSnapshot> load() throws IOException {
+        Map<String, MetricSnapshot> snapshots = new HashMap<>();
+        if(!Files.isRegularFile(this.path)){
+            return snapshots;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(this.path));
+        Decoder decoder = new Decoder(buffer);
+        if(buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION){
+            throw new IOException("Unrecognized snapshot file " + this.path);
+        }
+        int metrics = decoder.readVarint();
+        for (int m = 0; m < metrics; m++) {
+            String name = decoder.readString();
+            Type type = TYPES[buffer.get()];
+            String help = decoder.readString();
+            long collectTime = buffer.getLong();
+            int sampleCount = decoder.readVarint();
+            List<Sample> samples = new ArrayList<>(sampleCount);
+            for (int s = 0; s < sampleCount; s++) {
+                String sampleName = decoder.readString();
+                int labelCount = decoder.readVarint();
+                List<String> labelNames = new ArrayList<>(labelCount);
+                List<String> labelValues = new ArrayList<>(labelCount);
+                for (int i = 0; i < labelCount; i++) {
+                    labelNames.add(decoder.readString());
+                    labelValues.add(decoder.readString());
+                }
+                samples.add(new Sample(sampleName, labelNames, labelValues, buffer.getDouble()));
+            }
+            snapshots.put(name, new MetricSnapshot(new MetricFamilySamples(name, type, help, samples), collectTime, true));
+        }
+        return snapshots;
+    }
+
+    /**
+     * 可直接访问内部数组的字节输出流,写文件时不再复制一次
+     */
+    private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+        private ExposedByteArrayOutputStream() {
+            super(8192);
+        }
+
+        private byte[] buffer() {
+            return this.buf;
+        }
+    }
+
+    private static final class Encoder {
+
+        private final ExposedByteArrayOutputStream bytes = new ExposedByteArrayOutputStream();
+
+        private final DataOutputStream out = new DataOutputStream(this.bytes);
+
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        /**
+         * 已出现过的字符串写入序号+1,首次出现的字符串写入0及UTF-8内容
+         */
+        private void writeString(String value) throws IOException {
+            Integer index = this.dictionary.get(value);
+            if(index != null){
+                writeVarint(index + 1);
+                return;
+            }
+            this.dictionary.put(value, this.dictionary.size());
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(0);
+            writeVarint(encoded.length);
+            this.out.write(encoded);
+        }
+
+        private void writeVarint(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                this.out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.out.writeByte(value);
+        }
+    }
+
+    private static final class Decoder {
+
+        private final ByteBuffer buffer;
+
+        private final List<String> dictionary = new ArrayList<>();
+
+        private Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private String readString() {
+            int index = readVarint();
+            if(index > 0){
+                return this.dictionary.get(index - 1);
+            }
+            byte[] encoded = new byte[readVarint()];
+            this.buffer.get(encoded);
+            String value = new String(encoded, StandardCharsets.UTF_8);
+            this.dictionary.add(value);
+            return value;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = this.buffer.get();
+                value |= (b & 0x7F) << shift;
+                if((b & 0x80) == 0){
+                    return value;
+                }
+            }
+        }
+    }
+}
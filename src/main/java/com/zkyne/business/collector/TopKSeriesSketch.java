@@ -0,0 +1,164 @@
+package com.zkyne.business.collector;
+
+import com.google.common.collect.Lists;
+import io.prometheus.client.Collector.MetricFamilySamples;
+import io.prometheus.client.Collector.MetricFamilySamples.Sample;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * @className: TopKSeriesSketch
+ * @description: 序列数限制,以容量为capacity、按指标值绝对值排序的小顶堆保留绝对值最大的capacity个序列,
+ * 新序列的绝对值大于堆顶时替换堆顶,被替换或未进入堆的序列的指标值累加到所有label值均为other的序列中,内存只与capacity有关,与结果集大小无关;
+ * 不聚合的指标每个label组合只出现一次,因此不需要Space-Saving那样为重复出现的序列继承被淘汰序列的计数
+ * @author: zkyne
+ * @date: 2026/10/18 16:40
+ * @see <a href=""></a>
+ */
+final class TopKSeriesSketch {
+
+    /**
+     * 溢出序列的label值
+     */
+    static final String OTHER_TAG_VALUE = "other";
+
+    /**
+     * 绝对值较小的在前,绝对值相同时较晚出现的在前,即先出现的序列优先保留
+     */
+    private static final Comparator<Entry> BY_MAGNITUDE = (left, right) -> {
+        int compare = Double.compare(Math.abs(left.value), Math.abs(right.value));
+        return compare != 0 ? compare : Long.compare(right.sequence, left.sequence);
+    };
+
+    private final int capacity;
+
+    private final Map<List<String>, Entry> entries = new HashMap<>();
+
+    private final PriorityQueue<Entry> heap;
+
+    private long sequence;
+
+    private double other;
+
+    private long evictions;
+
+    /**
+     * @param capacity 保留的序列数,至少为1
+     */
+    TopKSeriesSketch(int capacity) {
+        this.capacity = capacity;
+        this.heap = new PriorityQueue<>(Math.min(capacity, 1024), BY_MAGNITUDE);
+    }
+
+    /**
+     * 接收一个序列,调用方保证同一个label组合只接收一次
+     */
+    void add(List<String> tagValues, double value) {
+        Entry entry = new Entry(tagValues, value, this.sequence++);
+        if(this.entries.size() < this.capacity){
+            this.entries.put(tagValues, entry);
+            this.heap.add(entry);
+            return;
+        }
+        this.evictions++;
+        Entry smallest = this.heap.peek();
+        if(BY_MAGNITUDE.compare(entry, smallest) <= 0){
+            this.other += value;
+            return;
+        }
+        this.heap.poll();
+        this.entries.remove(smallest.tagValues);
+        this.other += smallest.value;
+        this.entries.put(tagValues, entry);
+        this.heap.add(entry);
+    }
+
+    /**
+     * label组合是否为当前保留的序列
+     */
+    boolean contains(List<String> tagValues) {
+        return this.entries.containsKey(tagValues);
+    }
+
+    /**
+     * 合并到溢出序列的序列数
+     */
+    long evictions() {
+        return this.evictions;
+    }
+
+    /**
+     * 保留的序列按出现顺序排列,有序列被合并时最后是溢出序列
+     */
+    List<Sample> samples(String sampleName, List<String> tagKeys) {
+        List<Entry> kept = Lists.newArrayList(this.entries.values());
+        kept.sort(Comparator.comparingLong(entry -> entry.sequence));
+        List<Sample> samples = Lists.newArrayListWithCapacity(kept.size() + 1);
+        for (Entry entry : kept) {
+            samples.add(new Sample(sampleName, tagKeys, entry.tagValues, entry.value));
+        }
+        if(this.evictions > 0){
+            samples.add(new Sample(sampleName, tagKeys, otherTagValues(tagKeys.size()), this.other));
+        }
+        return samples;
+    }
+
+    /**
+     * 所有label值均为other的label值列表
+     */
+    static List<String> otherTagValues(int tagCount) {
+        return Collections.nCopies(tagCount, OTHER_TAG_VALUE);
+    }
+
+    /**
+     * 将已构建的样本集合限制在maxSeries个序列以内,按指标值绝对值保留最大的maxSeries-1个序列,其余合并为溢出序列;
+     * maxSeries为0时整个指标被丢弃,返回null
+     */
+    static MetricFamilySamples limit(MetricFamilySamples familySamples, int maxSeries) {
+        if(familySamples.samples.size() <= maxSeries){
+            return familySamples;
+        }
+        if(maxSeries <= 0){
+            return null;
+        }
+        Sample first = familySamples.samples.get(0);
+        List<String> otherTagValues = otherTagValues(first.labelNames.size());
+        double other = 0.0D;
+        List<Sample> sorted = Lists.newArrayListWithCapacity(familySamples.samples.size());
+        for (Sample sample : familySamples.samples) {
+            if(otherTagValues.equals(sample.labelValues)){
+                other += sample.value;
+            }else{
+                sorted.add(sample);
+            }
+        }
+        sorted.sort((left, right) -> Double.compare(Math.abs(right.value), Math.abs(left.value)));
+        int kept = Math.min(maxSeries - 1, sorted.size());
+        List<Sample> samples = Lists.newArrayList(sorted.subList(0, kept));
+        for (Sample sample : sorted.subList(kept, sorted.size())) {
+            other += sample.value;
+        }
+        samples.add(new Sample(first.name, first.labelNames, otherTagValues, other));
+        return new MetricFamilySamples(familySamples.name, familySamples.type, familySamples.help, samples);
+    }
+
+    private static final class Entry {
+
+        private final List<String> tagValues;
+
+        private final double value;
+
+        private final long sequence;
+
+        private Entry(List<String> tagValues, double value, long sequence) {
+            this.tagValues = tagValues;
+            this.value = value;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.zkyne.business.config;
+
+/**
+ * @className: Aggregation
+ * @description: 指标在exporter内的分组聚合方式,按tagKeys对应的label值分组,同一组的多行数据合并为一个样本
+ * @author: zkyne
+ * @date: 2026/10/18 18:00
+ * @see <a href=""></a>
+ */
+public enum Aggregation {
+    /**
+     * 不聚合,每一行数据输出一个样本;各行的label值组合必须唯一,出现重复的label组合时本次采集失败,
+     * 返回最近一次成功的快照,需要合并重复行时应配置其他聚合方式
+     */
+    NONE,
+    /**
+     * 求和
+     */
+    SUM,
+    /**
+     * 计数,忽略指标值
+     */
+    COUNT,
+    /**
+     * 最小值
+     */
+    MIN,
+    /**
+     * 最大值
+     */
+    MAX,
+    /**
+     * 平均值
+     */
+    AVG
+}
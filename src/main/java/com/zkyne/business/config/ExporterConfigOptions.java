@@ -38,6 +38,59 @@ public class ExporterConfigOptions {
      * 指标采集配置
      */
     private Map<String, MetricConfigOptions> metrics;
+    /**
+     * 后台定时采集线程数,仅当存在refreshInterval大于0的指标时生效,默认为1
+     */
+    private int refreshThreads = 1;
+    /**
+     * 是否启用并行采集,启用后每次拉取时同步采集的指标会提交到采集线程池并行执行,默认不开启
+     */
+    private boolean parallelCollectEnabled = false;
+    /**
+     * 并行采集线程数,默认为4
+     */
+    private int collectThreads = 4;
+    /**
+     * 并行采集线程池等待执行的采集队列长度,队列满时新的采集直接返回最近一次成功的快照,默认为100
+     */
+    private int collectQueueSize = 100;
+    /**
+     * 并行采集时单次拉取的整体超时时间(毫秒),超时未完成的指标会被取消并不返回,默认为10000;
+     * 启用并行采集或使用命名数据源时同时作为默认采集器的JDBC查询超时(按秒向上取整),超时的查询在数据库端也会停止
+     */
+    private long collectTimeout = 10000L;
+    /**
+     * 同步采集结果的最大复用时间(毫秒),该时间内完成的采集结果直接返回给后续拉取请求,默认为0,即不复用;
+     * 无论是否配置,同一指标已有采集在进行时,并发的拉取请求都会等待并共享其结果
+     */
+    private long maxStaleness = 0L;
+    /**
+     * 所有指标合计的最大序列数,超出时按指标顺序将超出部分合并到所有label值均为other的序列中,
+     * 同时作为未配置maxSeries的指标的序列数上限,默认为0,即不限制
+     */
+    private int maxSeries = 0;
+    /**
+     * 快照持久化文件路径,配置后exporter定期将各指标最近一次成功的快照以紧凑的二进制格式写入该文件,
+     * 重启时加载文件中的快照并标记为过期直接对外提供,直到首次采集完成;恢复的快照不受maxStaleness复用,默认不配置,即不持久化
+     */
+    private String snapshotFile;
+    /**
+     * 快照持久化间隔(毫秒),间隔内有新的采集结果时才写文件,默认为10000
+     */
+    private long snapshotPersistInterval = 10000L;
+    /**
+     * 命名数据源的隔离配置,key为数据源名称,与指标配置的datasource对应;未配置的数据源使用默认的隔离配置
+     */
+    private Map<String, DatasourceOptions> datasources = new HashMap<>();
+    /**
+     * 指标定义文件路径(.yml/.yaml或.properties),格式与spring.business.exporter.metrics的配置相同,
+     * 配置后exporter定期检查文件修改时间,文件变化时按名称合并到metrics并热加载,未变化的指标保留其快照与采集器;默认不配置
+     */
+    private String metricsFile;
+    /**
+     * 指标定义文件的检查间隔(毫秒),默认为5000
+     */
+    private long metricsFileCheckInterval = 5000L;
 
     public ExporterConfigOptions() {
 
@@ -48,6 +101,27 @@ public class ExporterConfigOptions {
         this.client = builder.client;
         this.syncConfigToServerEnabled = builder.syncConfigToServerEnabled;
         this.prometheus = builder.prometheus;
+        this.refreshThreads = builder.refreshThreads;
+        this.parallelCollectEnabled = builder.parallelCollectEnabled;
+        this.collectThreads = builder.collectThreads;
+        this.collectQueueSize = builder.collectQueueSize;
+        this.collectTimeout = builder.collectTimeout;
+        this.maxStaleness = builder.maxStaleness;
+        this.maxSeries = builder.maxSeries;
+        if(this.maxSeries < 0 || this.maxSeries == 1){
+            throw new IllegalArgumentException("Exporter Config error, the maxSeries must be 0 or greater than 1");
+        }
+        this.snapshotFile = builder.snapshotFile;
+        this.snapshotPersistInterval = builder.snapshotPersistInterval;
+        if(this.snapshotFile != null && this.snapshotPersistInterval <= 0){
+            throw new IllegalArgumentException("Exporter Config error, when snapshotFile is configured, the snapshotPersistInterval must be greater than 0");
+        }
+        this.datasources = builder.datasources;
+        this.metricsFile = builder.metricsFile;
+        this.metricsFileCheckInterval = builder.metricsFileCheckInterval;
+        if(this.metricsFile != null && this.metricsFileCheckInterval <= 0){
+            throw new IllegalArgumentException("Exporter Config error, when metricsFile is configured, the metricsFileCheckInterval must be greater than 0");
+        }
         metrics = new HashMap<>();
         if(builder.metrics == null || builder.metrics.isEmpty()){
             return;
@@ -77,6 +151,30 @@ public class ExporterConfigOptions {
 
         private List<MetricConfigOptions> metrics;
 
+        private int refreshThreads = 1;
+
+        private boolean parallelCollectEnabled = false;
+
+        private int collectThreads = 4;
+
+        private int collectQueueSize = 100;
+
+        private long collectTimeout = 10000L;
+
+        private long maxStaleness = 0L;
+
+        private int maxSeries = 0;
+
+        private String snapshotFile;
+
+        private long snapshotPersistInterval = 10000L;
+
+        private Map<String, DatasourceOptions> datasources = new HashMap<>();
+
+        private String metricsFile;
+
+        private long metricsFileCheckInterval = 5000L;
+
         public Builder builtInHttpEnabled(boolean builtInHttpEnabled){
             this.builtInHttpEnabled = builtInHttpEnabled;
             return this;
@@ -101,12 +199,134 @@ public class ExporterConfigOptions {
             return this;
         }
 
+        public Builder refreshThreads(int refreshThreads){
+            this.refreshThreads = refreshThreads;
+            return this;
+        }
+
+        public Builder parallelCollectEnabled(boolean parallelCollectEnabled){
+            this.parallelCollectEnabled = parallelCollectEnabled;
+            return this;
+        }
+
+        public Builder collectThreads(int collectThreads){
+            this.collectThreads = collectThreads;
+            return this;
+        }
+
+        public Builder collectQueueSize(int collectQueueSize){
+            this.collectQueueSize = collectQueueSize;
+            return this;
+        }
+
+        public Builder collectTimeout(long collectTimeout){
+            this.collectTimeout = collectTimeout;
+            return this;
+        }
+
+        public Builder maxStaleness(long maxStaleness){
+            this.maxStaleness = maxStaleness;
+            return this;
+        }
+
+        public Builder maxSeries(int maxSeries){
+            this.maxSeries = maxSeries;
+            return this;
+        }
+
+        public Builder snapshotFile(String snapshotFile){
+            this.snapshotFile = snapshotFile;
+            return this;
+        }
+
+        public Builder snapshotPersistInterval(long snapshotPersistInterval){
+            this.snapshotPersistInterval = snapshotPersistInterval;
+            return this;
+        }
+
+        public Builder datasource(String name, DatasourceOptions datasource){
+            this.datasources.put(name, datasource);
+            return this;
+        }
+
+        public Builder metricsFile(String metricsFile){
+            this.metricsFile = metricsFile;
+            return this;
+        }
+
+        public Builder metricsFileCheckInterval(long metricsFileCheckInterval){
+            this.metricsFileCheckInterval = metricsFileCheckInterval;
+            return this;
+        }
+
         public ExporterConfigOptions build(){
             return new ExporterConfigOptions(this);
         }
 
     }
 
+    public static class DatasourceOptions {
+        /**
+         * 该数据源同时执行的最大查询数,即该数据源独立的采集线程数,默认为4
+         */
+        private int maxConcurrentQueries = 4;
+        /**
+         * 该数据源等待执行的采集任务队列大小,队列满时新的采集直接返回最近一次成功的快照,默认为100
+         */
+        private int queueSize = 100;
+
+        public DatasourceOptions() {
+
+        }
+
+        private DatasourceOptions(Builder builder) {
+            this.maxConcurrentQueries = builder.maxConcurrentQueries;
+            this.queueSize = builder.queueSize;
+            if(this.maxConcurrentQueries <= 0 || this.queueSize <= 0){
+                throw new IllegalArgumentException("Exporter Config error, the datasource maxConcurrentQueries and queueSize must be greater than 0");
+            }
+        }
+
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        public static class Builder {
+            private int maxConcurrentQueries = 4;
+            private int queueSize = 100;
+
+            public Builder maxConcurrentQueries(int maxConcurrentQueries){
+                this.maxConcurrentQueries = maxConcurrentQueries;
+                return this;
+            }
+
+            public Builder queueSize(int queueSize){
+                this.queueSize = queueSize;
+                return this;
+            }
+
+            public DatasourceOptions build(){
+                return new DatasourceOptions(this);
+            }
+        }
+
+        public int getMaxConcurrentQueries() {
+            return maxConcurrentQueries;
+        }
+
+        public void setMaxConcurrentQueries(int maxConcurrentQueries) {
+            this.maxConcurrentQueries = maxConcurrentQueries;
+        }
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        public void setQueueSize(int queueSize) {
+            this.queueSize = queueSize;
+        }
+    }
+
     public static class PrometheusOptions {
         /**
          * prometheus服务的namespace
@@ -126,9 +346,24 @@ public class ExporterConfigOptions {
          */
         private String scrapeTimeout = "15s";
         /**
-         * prometheus静态采集配置的targets
+         * prometheus静态采集配置的targets,多个以逗号分隔;为空时使用本机主机名与内置http服务端口
          */
         private String targets;
+        /**
+         * 同步采集配置时写入file_sd targets文件<jobName>.json与采集配置片段<jobName>.yml的目录,
+         * 需为prometheus服务能读取的路径,开启syncConfigToServerEnabled时必须配置
+         */
+        private String configPath;
+        /**
+         * 按采集耗时重新生成采集配置的间隔(毫秒),默认为60000
+         */
+        private long syncInterval = 60000L;
+        /**
+         * 是否按刷新间隔与采集耗时拆分采集job,默认不开启,只生成一个沿用scrapeInterval/scrapeTimeout的job;
+         * 开启后发生拆分时基础job以name[]只拉取exporter的指标,同一registry中的其他collector(如jvm指标、应用自身的指标)
+         * 不再被任何job拉取,需要另行配置采集
+         */
+        private boolean splitJobsEnabled = false;
 
         public PrometheusOptions() {
 
@@ -140,6 +375,12 @@ public class ExporterConfigOptions {
             this.scrapeInterval = builder.scrapeInterval;
             this.scrapeTimeout = builder.scrapeTimeout;
             this.targets = builder.targets;
+            this.configPath = builder.configPath;
+            this.syncInterval = builder.syncInterval;
+            this.splitJobsEnabled = builder.splitJobsEnabled;
+            if(this.syncInterval <= 0){
+                throw new IllegalArgumentException("Exporter Config error, the prometheus syncInterval must be greater than 0");
+            }
         }
         public static Builder builder() {
             return new Builder();
@@ -151,6 +392,9 @@ public class ExporterConfigOptions {
             private String scrapeInterval="1m";
             private String scrapeTimeout = "15s";
             private String targets;
+            private String configPath;
+            private long syncInterval = 60000L;
+            private boolean splitJobsEnabled = false;
 
             public Builder namespace(String namespace){
                 this.namespace = namespace;
@@ -176,6 +420,21 @@ public class ExporterConfigOptions {
                 return this;
             }
 
+            public Builder configPath(String configPath){
+                this.configPath = configPath;
+                return this;
+            }
+
+            public Builder syncInterval(long syncInterval){
+                this.syncInterval = syncInterval;
+                return this;
+            }
+
+            public Builder splitJobsEnabled(boolean splitJobsEnabled){
+                this.splitJobsEnabled = splitJobsEnabled;
+                return this;
+            }
+
             public PrometheusOptions build(){
                 return new PrometheusOptions(this);
             }
@@ -221,6 +480,30 @@ public class ExporterConfigOptions {
         public void setTargets(String targets) {
             this.targets = targets;
         }
+
+        public String getConfigPath() {
+            return configPath;
+        }
+
+        public void setConfigPath(String configPath) {
+            this.configPath = configPath;
+        }
+
+        public long getSyncInterval() {
+            return syncInterval;
+        }
+
+        public void setSyncInterval(long syncInterval) {
+            this.syncInterval = syncInterval;
+        }
+
+        public boolean isSplitJobsEnabled() {
+            return splitJobsEnabled;
+        }
+
+        public void setSplitJobsEnabled(boolean splitJobsEnabled) {
+            this.splitJobsEnabled = splitJobsEnabled;
+        }
     }
 
     public static class ExporterClientOptions{
@@ -232,6 +515,55 @@ public class ExporterConfigOptions {
          * 内置http服务prometheus数据采集端口号,默认9093
          */
         private int clientPort = 9093;
+        /**
+         * 是否启用渲染缓存,启用后指标数据在两次后台定时采集之间只渲染一次,各次拉取共享同一份结果并支持ETag/Last-Modified返回304,
+         * exporter自身的监控指标、JVM等其他collector的指标每次拉取时渲染并计入ETag/Last-Modified,
+         * 要求所有指标都配置refreshInterval:每次拉取时同步采集的指标会在渲染过程中推进数据版本,缓存永远不会命中,
+         * 因此存在refreshInterval为0的指标时启动或热加载报配置错误,默认不开启
+         */
+        private boolean renderCacheEnabled = false;
+        /**
+         * gzip压缩级别,取值0-9,-1为默认级别
+         */
+        private int compressionLevel = -1;
+        /**
+         * 启用gzip压缩的最小响应大小(字节),小于该值时不压缩,默认为1024
+         */
+        private int compressionMinSize = 1024;
+        /**
+         * 内置http服务处理请求的线程数,默认为5
+         */
+        private int httpThreads = 5;
+        /**
+         * 内置http服务等待处理的请求队列长度,队列满时新的请求直接返回503,默认为100
+         */
+        private int httpQueueSize = 100;
+        /**
+         * 内置http服务的连接等待队列长度,默认为128
+         */
+        private int backlog = 128;
+        /**
+         * 是否保持长连接,关闭后每次响应后断开连接,默认开启
+         */
+        private boolean keepAliveEnabled = true;
+        /**
+         * 空闲长连接的超时时间(毫秒),按秒生效,默认为30000;尽力生效:JDK的http服务只在进程内第一次创建时读取该配置,进程内所有JDK http服务共享,
+         * 已有其他值生效时记录告警日志,进程内其他代码先创建的JDK http服务无法检测
+         */
+        private long idleTimeout = 30000L;
+        /**
+         * 最大空闲长连接数,默认为200;与idleTimeout一样尽力生效,已有其他值生效时记录告警日志
+         */
+        private int maxIdleConnections = 200;
+        /**
+         * 是否启用流式输出,启用后指标按块直接写入响应(chunked传输编码,按需经过流式gzip),
+         * 每个请求占用的内存只与streamBufferSize有关,与响应大小无关;启用渲染缓存时不生效,默认不开启
+         */
+        private boolean streamingEnabled = false;
+        /**
+         * 流式输出的缓冲区大小(字节),默认为65536
+         */
+        private int streamBufferSize = 65536;
 
         public ExporterClientOptions() {
 
@@ -240,6 +572,26 @@ public class ExporterConfigOptions {
         private ExporterClientOptions(Builder builder) {
             this.requestUri = builder.requestUri;
             this.clientPort = builder.clientPort;
+            this.renderCacheEnabled = builder.renderCacheEnabled;
+            this.compressionLevel = builder.compressionLevel;
+            this.compressionMinSize = builder.compressionMinSize;
+            this.httpThreads = builder.httpThreads;
+            this.httpQueueSize = builder.httpQueueSize;
+            this.backlog = builder.backlog;
+            this.keepAliveEnabled = builder.keepAliveEnabled;
+            this.idleTimeout = builder.idleTimeout;
+            this.maxIdleConnections = builder.maxIdleConnections;
+            this.streamingEnabled = builder.streamingEnabled;
+            this.streamBufferSize = builder.streamBufferSize;
+            if(this.httpThreads <= 0 || this.httpQueueSize <= 0){
+                throw new IllegalArgumentException("Exporter Config error, the client httpThreads and httpQueueSize must be greater than 0");
+            }
+            if(this.compressionLevel < -1 || this.compressionLevel > 9){
+                throw new IllegalArgumentException("Exporter Config error, the client compressionLevel must be between -1 and 9");
+            }
+            if(this.streamBufferSize <= 0){
+                throw new IllegalArgumentException("Exporter Config error, the client streamBufferSize must be greater than 0");
+            }
         }
         public static Builder builder() {
             return new Builder();
@@ -248,6 +600,17 @@ public class ExporterConfigOptions {
         public static class Builder {
             private String requestUri;
             private int clientPort = 9093;
+            private boolean renderCacheEnabled = false;
+            private int compressionLevel = -1;
+            private int compressionMinSize = 1024;
+            private int httpThreads = 5;
+            private int httpQueueSize = 100;
+            private int backlog = 128;
+            private boolean keepAliveEnabled = true;
+            private long idleTimeout = 30000L;
+            private int maxIdleConnections = 200;
+            private boolean streamingEnabled = false;
+            private int streamBufferSize = 65536;
 
             public Builder requestUri(String requestUri){
                 this.requestUri = requestUri;
@@ -257,6 +620,50 @@ public class ExporterConfigOptions {
                 this.clientPort = clientPort;
                 return this;
             }
+            public Builder renderCacheEnabled(boolean renderCacheEnabled){
+                this.renderCacheEnabled = renderCacheEnabled;
+                return this;
+            }
+            public Builder compressionLevel(int compressionLevel){
+                this.compressionLevel = compressionLevel;
+                return this;
+            }
+            public Builder compressionMinSize(int compressionMinSize){
+                this.compressionMinSize = compressionMinSize;
+                return this;
+            }
+            public Builder httpThreads(int httpThreads){
+                this.httpThreads = httpThreads;
+                return this;
+            }
+            public Builder httpQueueSize(int httpQueueSize){
+                this.httpQueueSize = httpQueueSize;
+                return this;
+            }
+            public Builder backlog(int backlog){
+                this.backlog = backlog;
+                return this;
+            }
+            public Builder keepAliveEnabled(boolean keepAliveEnabled){
+                this.keepAliveEnabled = keepAliveEnabled;
+                return this;
+            }
+            public Builder idleTimeout(long idleTimeout){
+                this.idleTimeout = idleTimeout;
+                return this;
+            }
+            public Builder maxIdleConnections(int maxIdleConnections){
+                this.maxIdleConnections = maxIdleConnections;
+                return this;
+            }
+            public Builder streamingEnabled(boolean streamingEnabled){
+                this.streamingEnabled = streamingEnabled;
+                return this;
+            }
+            public Builder streamBufferSize(int streamBufferSize){
+                this.streamBufferSize = streamBufferSize;
+                return this;
+            }
 
             public ExporterClientOptions build(){
                 return new ExporterClientOptions(this);
@@ -279,11 +686,103 @@ public class ExporterConfigOptions {
         public void setClientPort(int clientPort) {
             this.clientPort = clientPort;
         }
+
+        public boolean isRenderCacheEnabled() {
+            return renderCacheEnabled;
+        }
+
+        public void setRenderCacheEnabled(boolean renderCacheEnabled) {
+            this.renderCacheEnabled = renderCacheEnabled;
+        }
+
+        public int getCompressionLevel() {
+            return compressionLevel;
+        }
+
+        public void setCompressionLevel(int compressionLevel) {
+            this.compressionLevel = compressionLevel;
+        }
+
+        public int getCompressionMinSize() {
+            return compressionMinSize;
+        }
+
+        public void setCompressionMinSize(int compressionMinSize) {
+            this.compressionMinSize = compressionMinSize;
+        }
+
+        public int getHttpThreads() {
+            return httpThreads;
+        }
+
+        public void setHttpThreads(int httpThreads) {
+            this.httpThreads = httpThreads;
+        }
+
+        public int getHttpQueueSize() {
+            return httpQueueSize;
+        }
+
+        public void setHttpQueueSize(int httpQueueSize) {
+            this.httpQueueSize = httpQueueSize;
+        }
+
+        public int getBacklog() {
+            return backlog;
+        }
+
+        public void setBacklog(int backlog) {
+            this.backlog = backlog;
+        }
+
+        public boolean isKeepAliveEnabled() {
+            return keepAliveEnabled;
+        }
+
+        public void setKeepAliveEnabled(boolean keepAliveEnabled) {
+            this.keepAliveEnabled = keepAliveEnabled;
+        }
+
+        public long getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public void setIdleTimeout(long idleTimeout) {
+            this.idleTimeout = idleTimeout;
+        }
+
+        public int getMaxIdleConnections() {
+            return maxIdleConnections;
+        }
+
+        public void setMaxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+        }
+
+        public boolean isStreamingEnabled() {
+            return streamingEnabled;
+        }
+
+        public void setStreamingEnabled(boolean streamingEnabled) {
+            this.streamingEnabled = streamingEnabled;
+        }
+
+        public int getStreamBufferSize() {
+            return streamBufferSize;
+        }
+
+        public void setStreamBufferSize(int streamBufferSize) {
+            this.streamBufferSize = streamBufferSize;
+        }
     }
 
 
     public static class MetricConfigOptions{
 
+        private static final Double[] DEFAULT_BUCKETS = {.005, .01, .025, .05, .075, .1, .25, .5, .75, 1.0, 2.5, 5.0, 7.5, 10.0};
+
+        private static final Double[] DEFAULT_QUANTILES = {0.5, 0.9, 0.99};
+
         /**
          * 是否启用自定义底层数据采集,默认为false,直接使用默认采集器直接通过excuteSql查询采集
          */
@@ -314,6 +813,72 @@ public class ExporterConfigOptions {
          * 指标的label对应的keys,指的是以源数据map中选取哪些key作为指标的label
          */
         private Set<String> tagKeys;
+        /**
+         * 后台定时采集间隔(毫秒),大于0时由后台线程按该间隔采集,prometheus拉取时直接返回最近一次采集的快照;
+         * 默认为0,即每次拉取时同步执行采集
+         */
+        private long refreshInterval = 0L;
+        /**
+         * 并行采集时该指标的采集超时时间(毫秒),默认为0,即只受整体超时collectTimeout限制;
+         * 使用异步采集器的指标与collectTimeout不能同时为0
+         */
+        private long timeout = 0L;
+        /**
+         * 连续采集失败多少次后熔断,熔断期间不再执行查询,直接返回最近一次成功的快照,为0时不熔断,默认为3
+         */
+        private int failureThreshold = 3;
+        /**
+         * 首次熔断时长(毫秒),熔断到期后放行一次试探采集,试探失败熔断时长翻倍,默认为30000
+         */
+        private long circuitBreakDuration = 30000L;
+        /**
+         * 最大熔断时长(毫秒),默认为300000
+         */
+        private long maxCircuitBreakDuration = 300000L;
+        /**
+         * 指标类型,默认为GAUGE;为COUNTER时指标值需单调递增,启用增量采集时指标类型固定为COUNTER
+         */
+        private MetricType type = MetricType.GAUGE;
+        /**
+         * 是否启用增量采集,默认为false;启用后excuteSql需带一个水位参数(?),每次只查询水位之后新增的数据,
+         * exporter在内存中按label累加各批次的指标值(未配置valueKey时累加行数)并以COUNTER类型暴露,适用于只追加的业务表
+         */
+        private boolean incrementalEnabled = false;
+        /**
+         * 增量采集的水位列,指的是查询结果中哪一列作为水位(如自增id或创建时间),每批次取该列的最大值作为下一次查询的水位参数
+         */
+        private String watermarkKey;
+        /**
+         * 增量采集的初始水位,exporter启动后第一次查询使用,默认为0
+         */
+        private Object initialWatermark = 0L;
+        /**
+         * 该指标的最大序列数,超出时保留指标值最大的maxSeries-1个序列,其余合并到所有label值均为other的序列中,
+         * 采集时内存只与该值有关;默认为0,即只受全局maxSeries限制
+         */
+        private int maxSeries = 0;
+        /**
+         * HISTOGRAM类型指标的桶上界,需严格递增,+Inf桶自动追加,默认与prometheus客户端默认桶一致
+         */
+        private List<Double> buckets = Lists.newArrayList(DEFAULT_BUCKETS);
+        /**
+         * SUMMARY类型指标输出的分位数,取值范围[0,1],默认为0.5、0.9、0.99
+         */
+        private List<Double> quantiles = Lists.newArrayList(DEFAULT_QUANTILES);
+        /**
+         * SUMMARY类型指标分位值的相对误差,误差越小占用内存越多,取值范围(0,1),默认为0.01
+         */
+        private double quantileAccuracy = 0.01D;
+        /**
+         * GAUGE与COUNTER类型指标在exporter内的分组聚合方式,按label值分组合并多行数据,可将数据库的group by移到exporter执行,
+         * 同时避免重复的label组合被prometheus拒绝;默认为NONE,即不聚合,此时label组合重复的行会使本次采集失败
+         */
+        private Aggregation aggregation = Aggregation.NONE;
+        /**
+         * 指标使用的命名数据源,对应BusinessExporter.Builder中按名称注册的JdbcTemplate,该数据源的采集在其独立的线程池中执行;
+         * 默认不配置,即使用默认的jdbcTemplate
+         */
+        private String datasource;
 
         public MetricConfigOptions() {
         }
@@ -326,6 +891,21 @@ public class ExporterConfigOptions {
             this.help = builder.help;
             this.valueKey = builder.valueKey;
             this.tagKeys = builder.tagKeys;
+            this.refreshInterval = builder.refreshInterval;
+            this.timeout = builder.timeout;
+            this.failureThreshold = builder.failureThreshold;
+            this.circuitBreakDuration = builder.circuitBreakDuration;
+            this.maxCircuitBreakDuration = builder.maxCircuitBreakDuration;
+            this.type = builder.type;
+            this.incrementalEnabled = builder.incrementalEnabled;
+            this.watermarkKey = builder.watermarkKey;
+            this.initialWatermark = builder.initialWatermark;
+            this.maxSeries = builder.maxSeries;
+            this.buckets = builder.buckets;
+            this.quantiles = builder.quantiles;
+            this.quantileAccuracy = builder.quantileAccuracy;
+            this.aggregation = builder.aggregation;
+            this.datasource = builder.datasource;
             if(this.name == null || "".equals(this.name.trim())){
                 throw new IllegalArgumentException("Exporter Config error, the metric name must not be null or blank");
             }
@@ -338,6 +918,83 @@ public class ExporterConfigOptions {
                     throw new IllegalArgumentException("Exporter Config error, when customCollectorEnabled is false, the excuteSql must not be null or blank");
                 }
             }
+            if(this.refreshInterval < 0){
+                throw new IllegalArgumentException("Exporter Config error, the metric refreshInterval must not be negative");
+            }
+            if(this.timeout < 0){
+                throw new IllegalArgumentException("Exporter Config error, the metric timeout must not be negative");
+            }
+            if(this.failureThreshold < 0){
+                throw new IllegalArgumentException("Exporter Config error, the metric failureThreshold must not be negative");
+            }
+            if(this.failureThreshold > 0 && this.circuitBreakDuration <= 0){
+                throw new IllegalArgumentException("Exporter Config error, when failureThreshold is greater than 0, the circuitBreakDuration must be greater than 0");
+            }
+            if(this.type == null){
+                throw new IllegalArgumentException("Exporter Config error, the metric type must not be null");
+            }
+            if(this.maxSeries < 0 || this.maxSeries == 1){
+                throw new IllegalArgumentException("Exporter Config error, the metric maxSeries must be 0 or greater than 1");
+            }
+            if(this.aggregation == null){
+                throw new IllegalArgumentException("Exporter Config error, the metric aggregation must not be null");
+            }
+            if(this.aggregation != Aggregation.NONE && (this.incrementalEnabled || (this.type != MetricType.GAUGE && this.type != MetricType.COUNTER))){
+                throw new IllegalArgumentException("Exporter Config error, the aggregation only supports GAUGE or COUNTER type without incrementalEnabled");
+            }
+            if(this.incrementalEnabled){
+                if(this.watermarkKey == null || "".equals(this.watermarkKey.trim())){
+                    throw new IllegalArgumentException("Exporter Config error, when incrementalEnabled is true, the watermarkKey must not be null or blank");
+                }
+                if(this.initialWatermark == null){
+                    throw new IllegalArgumentException("Exporter Config error, when incrementalEnabled is true, the initialWatermark must not be null");
+                }
+                if(this.type != MetricType.GAUGE && this.type != MetricType.COUNTER){
+                    throw new IllegalArgumentException("Exporter Config error, when incrementalEnabled is true, the type must be GAUGE or COUNTER");
+                }
+            }
+            if(this.type == MetricType.HISTOGRAM && !isValidBuckets(this.buckets)){
+                throw new IllegalArgumentException("Exporter Config error, when type is HISTOGRAM, the buckets must not be empty and must be in strictly increasing order");
+            }
+            if(this.type == MetricType.SUMMARY){
+                if(!isValidQuantiles(this.quantiles)){
+                    throw new IllegalArgumentException("Exporter Config error, when type is SUMMARY, the quantiles must not be empty and must be between 0 and 1");
+                }
+                if(this.quantileAccuracy <= 0 || this.quantileAccuracy >= 1){
+                    throw new IllegalArgumentException("Exporter Config error, when type is SUMMARY, the quantileAccuracy must be between 0 and 1");
+                }
+            }
+        }
+
+        /**
+         * 桶上界非空、非NaN且严格递增
+         */
+        public static boolean isValidBuckets(List<Double> buckets) {
+            if(buckets == null || buckets.isEmpty()){
+                return false;
+            }
+            for (int i = 0; i < buckets.size(); i++) {
+                Double bucket = buckets.get(i);
+                if(bucket == null || bucket.isNaN() || (i > 0 && bucket <= buckets.get(i - 1))){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 分位数非空且都在[0,1]之间
+         */
+        public static boolean isValidQuantiles(List<Double> quantiles) {
+            if(quantiles == null || quantiles.isEmpty()){
+                return false;
+            }
+            for (Double quantile : quantiles) {
+                if(quantile == null || !(quantile >= 0 && quantile <= 1)){
+                    return false;
+                }
+            }
+            return true;
         }
 
         public static Builder builder() {
@@ -351,6 +1008,21 @@ public class ExporterConfigOptions {
             private String help = "help";
             private String valueKey;
             private Set<String> tagKeys;
+            private long refreshInterval = 0L;
+            private long timeout = 0L;
+            private int failureThreshold = 3;
+            private long circuitBreakDuration = 30000L;
+            private long maxCircuitBreakDuration = 300000L;
+            private MetricType type = MetricType.GAUGE;
+            private boolean incrementalEnabled = false;
+            private String watermarkKey;
+            private Object initialWatermark = 0L;
+            private int maxSeries = 0;
+            private List<Double> buckets = Lists.newArrayList(DEFAULT_BUCKETS);
+            private List<Double> quantiles = Lists.newArrayList(DEFAULT_QUANTILES);
+            private double quantileAccuracy = 0.01D;
+            private Aggregation aggregation = Aggregation.NONE;
+            private String datasource;
 
             public Builder customCollectorEnabled(boolean customCollectorEnabled){
                 this.customCollectorEnabled = customCollectorEnabled;
@@ -381,6 +1053,66 @@ public class ExporterConfigOptions {
                 this.tagKeys = tagKeys;
                 return this;
             }
+            public Builder refreshInterval(long refreshInterval){
+                this.refreshInterval = refreshInterval;
+                return this;
+            }
+            public Builder timeout(long timeout){
+                this.timeout = timeout;
+                return this;
+            }
+            public Builder failureThreshold(int failureThreshold){
+                this.failureThreshold = failureThreshold;
+                return this;
+            }
+            public Builder circuitBreakDuration(long circuitBreakDuration){
+                this.circuitBreakDuration = circuitBreakDuration;
+                return this;
+            }
+            public Builder maxCircuitBreakDuration(long maxCircuitBreakDuration){
+                this.maxCircuitBreakDuration = maxCircuitBreakDuration;
+                return this;
+            }
+            public Builder type(MetricType type){
+                this.type = type;
+                return this;
+            }
+            public Builder incrementalEnabled(boolean incrementalEnabled){
+                this.incrementalEnabled = incrementalEnabled;
+                return this;
+            }
+            public Builder watermarkKey(String watermarkKey){
+                this.watermarkKey = watermarkKey;
+                return this;
+            }
+            public Builder initialWatermark(Object initialWatermark){
+                this.initialWatermark = initialWatermark;
+                return this;
+            }
+            public Builder maxSeries(int maxSeries){
+                this.maxSeries = maxSeries;
+                return this;
+            }
+            public Builder buckets(Double... buckets){
+                this.buckets = Lists.newArrayList(buckets);
+                return this;
+            }
+            public Builder quantiles(Double... quantiles){
+                this.quantiles = Lists.newArrayList(quantiles);
+                return this;
+            }
+            public Builder quantileAccuracy(double quantileAccuracy){
+                this.quantileAccuracy = quantileAccuracy;
+                return this;
+            }
+            public Builder aggregation(Aggregation aggregation){
+                this.aggregation = aggregation;
+                return this;
+            }
+            public Builder datasource(String datasource){
+                this.datasource = datasource;
+                return this;
+            }
 
             public MetricConfigOptions build(){
                 return new MetricConfigOptions(this);
@@ -453,6 +1185,176 @@ public class ExporterConfigOptions {
             this.tagKeys = tagKeys;
         }
 
+        public long getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(long refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+
+        public void setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+        }
+
+        public long getCircuitBreakDuration() {
+            return circuitBreakDuration;
+        }
+
+        public void setCircuitBreakDuration(long circuitBreakDuration) {
+            this.circuitBreakDuration = circuitBreakDuration;
+        }
+
+        public long getMaxCircuitBreakDuration() {
+            return maxCircuitBreakDuration;
+        }
+
+        public void setMaxCircuitBreakDuration(long maxCircuitBreakDuration) {
+            this.maxCircuitBreakDuration = maxCircuitBreakDuration;
+        }
+
+        public MetricType getType() {
+            if(type == null){
+                return MetricType.GAUGE;
+            }
+            return type;
+        }
+
+        public void setType(MetricType type) {
+            this.type = type;
+        }
+
+        public boolean isIncrementalEnabled() {
+            return incrementalEnabled;
+        }
+
+        public void setIncrementalEnabled(boolean incrementalEnabled) {
+            this.incrementalEnabled = incrementalEnabled;
+        }
+
+        public String getWatermarkKey() {
+            return watermarkKey;
+        }
+
+        public void setWatermarkKey(String watermarkKey) {
+            this.watermarkKey = watermarkKey;
+        }
+
+        public Object getInitialWatermark() {
+            return initialWatermark;
+        }
+
+        public void setInitialWatermark(Object initialWatermark) {
+            this.initialWatermark = initialWatermark;
+        }
+
+        public int getMaxSeries() {
+            return maxSeries;
+        }
+
+        public void setMaxSeries(int maxSeries) {
+            this.maxSeries = maxSeries;
+        }
+
+        public List<Double> getBuckets() {
+            return buckets;
+        }
+
+        public void setBuckets(List<Double> buckets) {
+            this.buckets = buckets;
+        }
+
+        public List<Double> getQuantiles() {
+            return quantiles;
+        }
+
+        public void setQuantiles(List<Double> quantiles) {
+            this.quantiles = quantiles;
+        }
+
+        public double getQuantileAccuracy() {
+            return quantileAccuracy;
+        }
+
+        public void setQuantileAccuracy(double quantileAccuracy) {
+            this.quantileAccuracy = quantileAccuracy;
+        }
+
+        public Aggregation getAggregation() {
+            if(aggregation == null){
+                return Aggregation.NONE;
+            }
+            return aggregation;
+        }
+
+        public void setAggregation(Aggregation aggregation) {
+            this.aggregation = aggregation;
+        }
+
+        public String getDatasource() {
+            if(datasource == null || "".equals(datasource.trim())){
+                return null;
+            }
+            return datasource.trim();
+        }
+
+        public void setDatasource(String datasource) {
+            this.datasource = datasource;
+        }
+
+        /**
+         * 按生效的配置值比较,热加载时配置相同的指标保留原有的采集状态
+         */
+        @Override
+        public boolean equals(Object o) {
+            if(this == o){
+                return true;
+            }
+            if(o == null || getClass() != o.getClass()){
+                return false;
+            }
+            MetricConfigOptions that = (MetricConfigOptions) o;
+            return isCustomCollectorEnabled() == that.isCustomCollectorEnabled()
+                    && getRefreshInterval() == that.getRefreshInterval()
+                    && getTimeout() == that.getTimeout()
+                    && getFailureThreshold() == that.getFailureThreshold()
+                    && getCircuitBreakDuration() == that.getCircuitBreakDuration()
+                    && getMaxCircuitBreakDuration() == that.getMaxCircuitBreakDuration()
+                    && isIncrementalEnabled() == that.isIncrementalEnabled()
+                    && getMaxSeries() == that.getMaxSeries()
+                    && Double.compare(getQuantileAccuracy(), that.getQuantileAccuracy()) == 0
+                    && Objects.equals(getCustomCollector(), that.getCustomCollector())
+                    && Objects.equals(getExcuteSql(), that.getExcuteSql())
+                    && Objects.equals(getName(), that.getName())
+                    && Objects.equals(getHelp(), that.getHelp())
+                    && Objects.equals(getValueKey(), that.getValueKey())
+                    && Objects.equals(new HashSet<>(getTagKeys()), new HashSet<>(that.getTagKeys()))
+                    && getType() == that.getType()
+                    && Objects.equals(getWatermarkKey(), that.getWatermarkKey())
+                    && Objects.equals(getInitialWatermark(), that.getInitialWatermark())
+                    && Objects.equals(getBuckets(), that.getBuckets())
+                    && Objects.equals(getQuantiles(), that.getQuantiles())
+                    && getAggregation() == that.getAggregation()
+                    && Objects.equals(getDatasource(), that.getDatasource());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getName(), getExcuteSql(), getCustomCollector(), getType(), getDatasource());
+        }
+
     }
 
     public boolean isBuiltInHttpEnabled() {
@@ -494,4 +1396,100 @@ public class ExporterConfigOptions {
     public void setMetrics(Map<String, MetricConfigOptions> metrics) {
         this.metrics = metrics;
     }
+
+    public int getRefreshThreads() {
+        return refreshThreads;
+    }
+
+    public void setRefreshThreads(int refreshThreads) {
+        this.refreshThreads = refreshThreads;
+    }
+
+    public boolean isParallelCollectEnabled() {
+        return parallelCollectEnabled;
+    }
+
+    public void setParallelCollectEnabled(boolean parallelCollectEnabled) {
+        this.parallelCollectEnabled = parallelCollectEnabled;
+    }
+
+    public int getCollectThreads() {
+        return collectThreads;
+    }
+
+    public void setCollectThreads(int collectThreads) {
+        this.collectThreads = collectThreads;
+    }
+
+    public int getCollectQueueSize() {
+        return collectQueueSize;
+    }
+
+    public void setCollectQueueSize(int collectQueueSize) {
+        this.collectQueueSize = collectQueueSize;
+    }
+
+    public long getCollectTimeout() {
+        return collectTimeout;
+    }
+
+    public void setCollectTimeout(long collectTimeout) {
+        this.collectTimeout = collectTimeout;
+    }
+
+    public long getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    public void setMaxStaleness(long maxStaleness) {
+        this.maxStaleness = maxStaleness;
+    }
+
+    public int getMaxSeries() {
+        return maxSeries;
+    }
+
+    public void setMaxSeries(int maxSeries) {
+        this.maxSeries = maxSeries;
+    }
+
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public void setSnapshotFile(String snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    public long getSnapshotPersistInterval() {
+        return snapshotPersistInterval;
+    }
+
+    public void setSnapshotPersistInterval(long snapshotPersistInterval) {
+        this.snapshotPersistInterval = snapshotPersistInterval;
+    }
+
+    public Map<String, DatasourceOptions> getDatasources() {
+        return datasources;
+    }
+
+    public void setDatasources(Map<String, DatasourceOptions> datasources) {
+        this.datasources = datasources;
+    }
+
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    public void setMetricsFile(String metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    public long getMetricsFileCheckInterval() {
+        return metricsFileCheckInterval;
+    }
+
+    public void setMetricsFileCheckInterval(long metricsFileCheckInterval) {
+        this.metricsFileCheckInterval = metricsFileCheckInterval;
+    }
 }
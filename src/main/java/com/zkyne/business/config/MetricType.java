@@ -0,0 +1,27 @@
+package com.zkyne.business.config;
+
+/**
+ * @className: MetricType
+ * @description: 指标类型,决定指标以何种prometheus类型对外暴露
+ * @author: zkyne
+ * @date: 2026/10/18 15:10
+ * @see <a href=""></a>
+ */
+public enum MetricType {
+    /**
+     * 仪表盘,每次采集的结果直接作为指标值
+     */
+    GAUGE,
+    /**
+     * 计数器,指标值单调递增,样本名称以_total结尾
+     */
+    COUNTER,
+    /**
+     * 直方图,exporter按buckets逐行统计原始值的分布,按tagKeys分组输出_bucket、_count、_sum样本
+     */
+    HISTOGRAM,
+    /**
+     * 摘要,exporter用有界内存的分位数草图逐行统计原始值,按tagKeys分组输出quantiles对应的分位值及_count、_sum样本
+     */
+    SUMMARY
+}
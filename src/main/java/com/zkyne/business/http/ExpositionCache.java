@@ -0,0 +1,283 @@
+package com.zkyne.business.http;
+
+import io.prometheus.client.Collector.MetricFamilySamples;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Histogram;
+import io.prometheus.client.Predicate;
+import io.prometheus.client.exporter.common.TextFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * Caches the rendered text exposition of the versioned metrics of a registry until their data version changes.
+ * <p>
+ * One immutable rendering is kept per requested {@code name[]} filter, so every scrape between two refreshes is
+ * served from the same bytes and serialization cost follows the refresh rate instead of the scrape rate.
+ * Metrics outside the versioned names, such as the exporter's own instrumentation or JVM collectors, change without
+ * bumping the data version; they are rendered on every request and appended to the cached bytes, and they take part
+ * in the ETag and Last-Modified of the response.
+ * <p>
+ * A versioned metric collected during the render bumps the data version itself, so the cached rendering would be
+ * stale on the next request; the cache is only useful when every versioned metric is refreshed in the background.
+ */
+public class ExpositionCache {
+    /**
+     * Upper bound of cached filters, protects against scrapers sending arbitrary {@code name[]} combinations.
+     */
+    private static final int MAX_ENTRIES = 64;
+
+    private final CollectorRegistry registry;
+    private final LongSupplier versionSupplier;
+    private final Predicate<String> versionedNames;
+    private final int compressionLevel;
+    private final ConcurrentMap<Set<String>, Entry> entries = new ConcurrentHashMap<Set<String>, Entry>();
+
+    /**
+     * @param versionedNames sample names whose values change only together with {@code versionSupplier}
+     */
+    public ExpositionCache(CollectorRegistry registry, LongSupplier versionSupplier, Predicate<String> versionedNames, int compressionLevel) {
+        this.registry = registry;
+        this.versionSupplier = versionSupplier;
+        this.versionedNames = versionedNames;
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Gets the exposition for the given filter. The versioned metrics are rendered again only if the data version
+     * changed since the last render, the other metrics are rendered now.
+     * <p>
+     * Without a filter the other metrics are read without a sample name filter and the versioned samples are dropped
+     * afterwards: the registry skips collectors that do not describe their names as soon as any filter is applied.
+     */
+    public Exposition get(final Set<String> names) throws IOException {
+        Rendering rendering = cached(names);
+        final Predicate<String> unversioned = new Predicate<String>() {
+            @Override
+            public boolean test(String name) {
+                return !versionedNames.test(name) && (names.isEmpty() || names.contains(name));
+            }
+        };
+        byte[] live = render(names.isEmpty()
+                ? filter(registry.metricFamilySamples(), unversioned)
+                : registry.filteredMetricFamilySamples(unversioned));
+        return new Exposition(rendering, live);
+    }
+
+    private static Enumeration<MetricFamilySamples> filter(Enumeration<MetricFamilySamples> familySamples, Predicate<String> sampleNameFilter) {
+        List<MetricFamilySamples> filtered = new ArrayList<MetricFamilySamples>();
+        while (familySamples.hasMoreElements()) {
+            MetricFamilySamples metricFamilySamples = familySamples.nextElement().filter(sampleNameFilter);
+            if (metricFamilySamples != null) {
+                filtered.add(metricFamilySamples);
+            }
+        }
+        return Collections.enumeration(filtered);
+    }
+
+    /**
+     * Renders under a lock per filter, so scrapes with different {@code name[]} filters never wait for each other.
+     */
+    private Rendering cached(final Set<String> names) throws IOException {
+        Entry entry = entries.get(names);
+        if (entry == null) {
+            if (entries.size() >= MAX_ENTRIES) {
+                entries.clear();
+            }
+            Entry created = new Entry();
+            entry = entries.putIfAbsent(names, created);
+            if (entry == null) {
+                entry = created;
+            }
+        }
+        long version = versionSupplier.getAsLong();
+        Rendering rendering = entry.rendering;
+        if (rendering != null && rendering.version == version) {
+            return rendering;
+        }
+        synchronized (entry) {
+            rendering = entry.rendering;
+            version = versionSupplier.getAsLong();
+            if (rendering != null && rendering.version == version) {
+                return rendering;
+            }
+            byte[] body = render(registry.filteredMetricFamilySamples(new Predicate<String>() {
+                @Override
+                public boolean test(String name) {
+                    return versionedNames.test(name) && (names.isEmpty() || names.contains(name));
+                }
+            }));
+            String tag = tag(body);
+            long lastModified = rendering != null && rendering.tag.equals(tag) ? rendering.lastModified : System.currentTimeMillis();
+            Rendering rendered = new Rendering(body, tag, lastModified, version, compressionLevel);
+            entry.rendering = rendered;
+            return rendered;
+        }
+    }
+
+    private static byte[] render(Enumeration<MetricFamilySamples> familySamples) throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream(1 << 12);
+        OutputStreamWriter osw = new OutputStreamWriter(response, StandardCharsets.UTF_8);
+        Histogram.Timer renderTimer = HttpMetrics.RENDER_DURATION.startTimer();
+        try {
+            TextFormat.write004(osw, familySamples);
+        } finally {
+            renderTimer.observeDuration();
+        }
+        osw.close();
+        return response.toByteArray();
+    }
+
+    private static String tag(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(body.length);
+    }
+
+    /**
+     * The latest rendering of one filter, also the lock its renders run under.
+     */
+    private static class Entry {
+        private volatile Rendering rendering;
+    }
+
+    /**
+     * An immutable rendering of the versioned metrics, shared by all requests until the data version changes.
+     */
+    private static class Rendering {
+        private final byte[] body;
+        private final String tag;
+        private final long lastModified;
+        private final long version;
+        private final int compressionLevel;
+        private volatile byte[] gzipBody;
+        /**
+         * Tag and change time of the metrics rendered per request, to keep Last-Modified stable while they do not change.
+         */
+        private volatile String liveTag = "";
+        private volatile long liveModified;
+
+        Rendering(byte[] body, String tag, long lastModified, long version, int compressionLevel) {
+            this.body = body;
+            this.tag = tag;
+            this.lastModified = lastModified;
+            this.version = version;
+            this.compressionLevel = compressionLevel;
+            this.liveModified = lastModified;
+        }
+
+        /**
+         * The gzip-encoded body, compressed once on first use and shared by all later requests, must not be modified.
+         */
+        byte[] gzipBody() throws IOException {
+            byte[] compressed = gzipBody;
+            if (compressed == null) {
+                synchronized (this) {
+                    compressed = gzipBody;
+                    if (compressed == null) {
+                        compressed = gzip(body, compressionLevel);
+                        gzipBody = compressed;
+                    }
+                }
+            }
+            return compressed;
+        }
+
+        long liveModified(String tag) {
+            if (!liveTag.equals(tag)) {
+                liveModified = Math.max(lastModified, System.currentTimeMillis());
+                liveTag = tag;
+            }
+            return liveModified;
+        }
+    }
+
+    private static byte[] gzip(byte[] body, int compressionLevel) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(body.length / 4, 256));
+        HttpServer.gzip(body, body.length, out, compressionLevel);
+        return out.toByteArray();
+    }
+
+    /**
+     * The exposition of one request: the cached rendering followed by the metrics rendered for this request.
+     * Gzip responses concatenate the cached gzip member and a member for the per-request part, which is a valid
+     * multi-member gzip stream.
+     */
+    public static class Exposition {
+        private final Rendering rendering;
+        private final byte[] live;
+        private final String etag;
+        private final long lastModified;
+        private byte[] liveGzip;
+
+        Exposition(Rendering rendering, byte[] live) {
+            this.rendering = rendering;
+            this.live = live;
+            if (live.length == 0) {
+                this.etag = "\"" + rendering.tag + "\"";
+                this.lastModified = rendering.lastModified;
+            } else {
+                String liveTag = tag(live);
+                this.etag = "\"" + rendering.tag + "." + liveTag + "\"";
+                this.lastModified = rendering.liveModified(liveTag);
+            }
+        }
+
+        /**
+         * Length of the identity-encoded body.
+         */
+        public int getLength() {
+            return rendering.body.length + live.length;
+        }
+
+        /**
+         * Length of the gzip-encoded body.
+         */
+        public int getGzipLength() throws IOException {
+            return rendering.gzipBody().length + liveGzip().length;
+        }
+
+        /**
+         * Writes the identity-encoded body.
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(rendering.body);
+            out.write(live);
+        }
+
+        /**
+         * Writes the gzip-encoded body.
+         */
+        public void writeGzipTo(OutputStream out) throws IOException {
+            out.write(rendering.gzipBody());
+            out.write(liveGzip());
+        }
+
+        private byte[] liveGzip() throws IOException {
+            if (liveGzip == null) {
+                liveGzip = live.length == 0 ? live : gzip(live, rendering.compressionLevel);
+            }
+            return liveGzip;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.zkyne.business.http;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Metrics of the built-in HTTP server: render time, gzip time, bytes written, rejected and in-flight requests.
+ * <p>
+ * The instruments are process wide and backed by the striped adders of the simple client, so recording them
+ * on every request does not become a contention point. They are exposed once per registry.
+ */
+final class HttpMetrics extends Collector implements Collector.Describable {
+    private static final Map<CollectorRegistry, HttpMetrics> REGISTERED = new IdentityHashMap<CollectorRegistry, HttpMetrics>();
+
+    static final Histogram RENDER_DURATION = Histogram.build()
+            .name("business_exporter_http_render_duration_seconds")
+            .help("Time spent rendering the text exposition")
+            .create();
+
+    static final Histogram GZIP_DURATION = Histogram.build()
+            .name("business_exporter_http_gzip_duration_seconds")
+            .help("Time spent gzip encoding responses")
+            .create();
+
+    static final Counter BYTES_WRITTEN = Counter.build()
+            .name("business_exporter_http_response_bytes_total")
+            .help("Response body bytes written by the built-in HTTP server")
+            .create();
+
+    static final Counter REJECTED = Counter.build()
+            .name("business_exporter_http_requests_rejected_total")
+            .help("Requests answered with 503 because the request queue of the built-in HTTP server was full")
+            .create();
+
+    static final Gauge IN_FLIGHT = Gauge.build()
+            .name("business_exporter_http_requests_in_flight")
+            .help("Requests currently being handled by the built-in HTTP server")
+            .create();
+
+    private HttpMetrics() {
+    }
+
+    static void registerTo(CollectorRegistry registry) {
+        synchronized (REGISTERED) {
+            if (!REGISTERED.containsKey(registry)) {
+                REGISTERED.put(registry, new HttpMetrics().<HttpMetrics>register(registry));
+            }
+        }
+    }
+
+    static Set<String> names() {
+        Set<String> names = new LinkedHashSet<String>();
+        for (MetricFamilySamples mfs : new HttpMetrics().describe()) {
+            names.addAll(Arrays.asList(mfs.getNames()));
+        }
+        return names;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples> mfs = new ArrayList<MetricFamilySamples>();
+        mfs.addAll(RENDER_DURATION.collect());
+        mfs.addAll(GZIP_DURATION.collect());
+        mfs.addAll(BYTES_WRITTEN.collect());
+        mfs.addAll(REJECTED.collect());
+        mfs.addAll(IN_FLIGHT.collect());
+        return mfs;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        List<MetricFamilySamples> mfs = new ArrayList<MetricFamilySamples>();
+        mfs.addAll(RENDER_DURATION.describe());
+        mfs.addAll(GZIP_DURATION.describe());
+        mfs.addAll(BYTES_WRITTEN.describe());
+        mfs.addAll(REJECTED.describe());
+        mfs.addAll(IN_FLIGHT.describe());
+        return mfs;
+    }
+}
@@ -2,20 +2,37 @@ package com.zkyne.business.http;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import com.zkyne.business.config.ExporterConfigOptions.ExporterClientOptions;
 import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Histogram;
+import io.prometheus.client.Predicate;
 import io.prometheus.client.exporter.common.TextFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
 /**
@@ -29,10 +46,61 @@ import java.util.zip.GZIPOutputStream;
  * </pre>
  * */
 public class HttpServer {
-    private static class LocalByteArray extends ThreadLocal<ByteArrayOutputStream> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpServer.class);
+
+    private static final String IDLE_INTERVAL_PROPERTY = "sun.net.httpserver.idleInterval";
+    private static final String MAX_IDLE_CONNECTIONS_PROPERTY = "sun.net.httpserver.maxIdleConnections";
+
+    /**
+     * Idle settings in effect for the JDK servers of this JVM, as {@code idleInterval/maxIdleConnections}, recorded when
+     * the first server of this class is created.
+     */
+    private static final AtomicReference<String> IDLE_SETTINGS = new AtomicReference<String>();
+
+    private static class LocalByteArray extends ThreadLocal<BufferedByteArray> {
         @Override
-        protected ByteArrayOutputStream initialValue() {
-            return new ByteArrayOutputStream(1 << 20);
+        protected BufferedByteArray initialValue() {
+            return new BufferedByteArray(1 << 20);
+        }
+    }
+
+    /**
+     * A {@link ByteArrayOutputStream} whose buffer can be written out without copying.
+     */
+    private static class BufferedByteArray extends ByteArrayOutputStream {
+        BufferedByteArray(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+    /**
+     * Counts the bytes passed through to the underlying stream.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
         }
     }
 
@@ -41,26 +109,79 @@ public class HttpServer {
      */
     static class HttpMetricHandler implements HttpHandler {
         private final CollectorRegistry registry;
+        private final ExpositionCache expositionCache;
+        private final int compressionLevel;
+        private final int compressionMinSize;
+        private final boolean keepAliveEnabled;
+        private final boolean streamingEnabled;
+        private final int streamBufferSize;
         private final LocalByteArray response = new LocalByteArray();
         private final static String HEALTHY_RESPONSE = "Exporter is Healthy.";
 
         HttpMetricHandler(CollectorRegistry registry) {
+          this(registry, null, Deflater.DEFAULT_COMPRESSION, 0, true, false, 0);
+        }
+
+        HttpMetricHandler(CollectorRegistry registry, ExpositionCache expositionCache, int compressionLevel, int compressionMinSize,
+                          boolean keepAliveEnabled, boolean streamingEnabled, int streamBufferSize) {
           this.registry = registry;
+          this.expositionCache = expositionCache;
+          this.compressionLevel = compressionLevel;
+          this.compressionMinSize = compressionMinSize;
+          this.keepAliveEnabled = keepAliveEnabled;
+          this.streamingEnabled = streamingEnabled;
+          this.streamBufferSize = streamBufferSize;
         }
 
         @Override
         public void handle(HttpExchange t) throws IOException {
+            if (BoundedExecutor.isShedding()) {
+                HttpMetrics.REJECTED.inc();
+                t.getResponseHeaders().set("Retry-After", "1");
+                t.getResponseHeaders().set("Connection", "close");
+                t.sendResponseHeaders(HttpURLConnection.HTTP_UNAVAILABLE, -1);
+                t.close();
+                return;
+            }
+            HttpMetrics.IN_FLIGHT.inc();
+            try {
+                doHandle(t);
+            } finally {
+                HttpMetrics.IN_FLIGHT.dec();
+            }
+        }
+
+        private void doHandle(HttpExchange t) throws IOException {
             String query = t.getRequestURI().getRawQuery();
+            if (!keepAliveEnabled) {
+                t.getResponseHeaders().set("Connection", "close");
+            }
 
             String contextPath = t.getHttpContext().getPath();
-            ByteArrayOutputStream response = this.response.get();
+            if (!"/-/healthy".equals(contextPath)) {
+                t.getResponseHeaders().set("Vary", "Accept-Encoding");
+            }
+            if (expositionCache != null && !"/-/healthy".equals(contextPath)) {
+                handleCached(t, expositionCache.get(parseQuery(query)));
+                return;
+            }
+            if (streamingEnabled && !"/-/healthy".equals(contextPath)) {
+                handleStreaming(t, parseQuery(query));
+                return;
+            }
+            BufferedByteArray response = this.response.get();
             response.reset();
             OutputStreamWriter osw = new OutputStreamWriter(response);
             if ("/-/healthy".equals(contextPath)) {
                 osw.write(HEALTHY_RESPONSE);
             } else {
-                TextFormat.write004(osw,
-                        registry.filteredMetricFamilySamples(parseQuery(query)));
+                Histogram.Timer renderTimer = HttpMetrics.RENDER_DURATION.startTimer();
+                try {
+                    TextFormat.write004(osw,
+                            registry.filteredMetricFamilySamples(parseQuery(query)));
+                } finally {
+                    renderTimer.observeDuration();
+                }
             }
 
             osw.flush();
@@ -69,23 +190,176 @@ public class HttpServer {
             response.close();
             t.getResponseHeaders().set("Content-Type",
                     TextFormat.CONTENT_TYPE_004);
-            if (shouldUseCompression(t)) {
+            if (shouldUseCompression(t) && response.size() >= compressionMinSize) {
+                sendGzipBody(t, response.buffer(), response.size(), compressionLevel);
+            } else {
+                sendBody(t, null, response.buffer(), 0, response.size());
+            }
+        }
+
+        /**
+         * Writes the exposition family by family straight to the response body using chunked transfer encoding,
+         * gzipping on the fly when the scraper accepts it. Nothing but the fixed-size buffers is held per request,
+         * so the payload size does not affect memory. The size is unknown up front, so {@code compressionMinSize}
+         * does not apply and the render time includes the time spent writing to the socket.
+         * If rendering fails half-way the exception propagates without finishing the chunked body, so the
+         * connection is dropped and the scraper sees a failed scrape instead of a truncated one.
+         */
+        private void handleStreaming(HttpExchange t, Set<String> names) throws IOException {
+            boolean gzip = shouldUseCompression(t);
+            t.getResponseHeaders().set("Content-Type",
+                    TextFormat.CONTENT_TYPE_004);
+            if (gzip) {
                 t.getResponseHeaders().set("Content-Encoding", "gzip");
-                t.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
-                final GZIPOutputStream os = new GZIPOutputStream(t.getResponseBody());
-                response.writeTo(os);
-                os.close();
+            }
+            t.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+            CountingOutputStream body = new CountingOutputStream(t.getResponseBody());
+            OutputStream out = new BufferedOutputStream(gzip ? newGzipStream(body, compressionLevel, streamBufferSize) : body,
+                    streamBufferSize);
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            Histogram.Timer renderTimer = HttpMetrics.RENDER_DURATION.startTimer();
+            try {
+                TextFormat.write004(writer, registry.filteredMetricFamilySamples(names));
+            } finally {
+                renderTimer.observeDuration();
+            }
+            writer.close();
+            HttpMetrics.BYTES_WRITTEN.inc(body.getCount());
+            t.close();
+        }
+
+        /**
+         * Serves a pre-rendered exposition, answering 304 when the scraper already holds the same content.
+         * The gzip and identity representations carry different ETags, so a cache keyed on the ETag never
+         * serves one encoding for the other.
+         */
+        private void handleCached(HttpExchange t, ExpositionCache.Exposition exposition) throws IOException {
+            boolean gzip = shouldUseCompression(t) && exposition.getLength() >= compressionMinSize;
+            String etag = gzip ? gzipEtag(exposition.getEtag()) : exposition.getEtag();
+            t.getResponseHeaders().set("ETag", etag);
+            t.getResponseHeaders().set("Last-Modified", formatHttpDate(exposition.getLastModified()));
+            if (isNotModified(t, etag, exposition.getLastModified())) {
+                t.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+                t.close();
+                return;
+            }
+            t.getResponseHeaders().set("Content-Type",
+                    TextFormat.CONTENT_TYPE_004);
+            int length = gzip ? exposition.getGzipLength() : exposition.getLength();
+            if (gzip) {
+                t.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            t.getResponseHeaders().set("Content-Length",
+                    String.valueOf(length));
+            t.sendResponseHeaders(HttpURLConnection.HTTP_OK, length);
+            if (gzip) {
+                exposition.writeGzipTo(t.getResponseBody());
             } else {
-                t.getResponseHeaders().set("Content-Length",
-                        String.valueOf(response.size()));
-                t.sendResponseHeaders(HttpURLConnection.HTTP_OK, response.size());
-                response.writeTo(t.getResponseBody());
+                exposition.writeTo(t.getResponseBody());
             }
+            HttpMetrics.BYTES_WRITTEN.inc(length);
             t.close();
         }
 
     }
 
+    /**
+     * Sends {@code length} bytes of {@code body} starting at {@code offset} with an exact Content-Length.
+     */
+    protected static void sendBody(HttpExchange t, String contentEncoding, byte[] body, int offset, int length) throws IOException {
+        if (contentEncoding != null) {
+            t.getResponseHeaders().set("Content-Encoding", contentEncoding);
+        }
+        t.getResponseHeaders().set("Content-Length",
+                String.valueOf(length));
+        t.sendResponseHeaders(HttpURLConnection.HTTP_OK, length);
+        t.getResponseBody().write(body, offset, length);
+        HttpMetrics.BYTES_WRITTEN.inc(length);
+        t.close();
+    }
+
+    /**
+     * Gzips the first {@code length} bytes of {@code body} straight to the response body with chunked transfer
+     * encoding, so no buffer for the compressed bytes is held beyond the deflater's own. The gzip duration
+     * includes the time spent writing to the socket.
+     */
+    protected static void sendGzipBody(HttpExchange t, byte[] body, int length, int level) throws IOException {
+        t.getResponseHeaders().set("Content-Encoding", "gzip");
+        t.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+        CountingOutputStream out = new CountingOutputStream(t.getResponseBody());
+        gzip(body, length, out, level);
+        HttpMetrics.BYTES_WRITTEN.inc(out.getCount());
+        t.close();
+    }
+
+    /**
+     * Gzips the first {@code length} bytes of {@code body} into {@code out} using the given deflate level.
+     */
+    protected static void gzip(byte[] body, int length, OutputStream out, final int level) throws IOException {
+        Histogram.Timer gzipTimer = HttpMetrics.GZIP_DURATION.startTimer();
+        try {
+            GZIPOutputStream os = newGzipStream(out, level, 8192);
+            os.write(body, 0, length);
+            os.close();
+        } finally {
+            gzipTimer.observeDuration();
+        }
+    }
+
+    /**
+     * Creates a gzip stream over {@code out} using the given deflate level and buffer size.
+     */
+    protected static GZIPOutputStream newGzipStream(OutputStream out, final int level, int size) throws IOException {
+        return new GZIPOutputStream(out, size) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    /**
+     * The ETag of the gzip representation: the identity ETag with a {@code -gz} suffix, marked weak because the
+     * compressed bytes depend on the deflate level and are not byte-for-byte reproducible across configurations.
+     */
+    protected static String gzipEtag(String etag) {
+        return "W/" + etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+
+    /**
+     * Evaluates If-None-Match with the weak comparison of RFC 7232, falling back to If-Modified-Since.
+     */
+    protected static boolean isNotModified(HttpExchange exchange, String etag, long lastModified) {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            String opaque = opaqueTag(etag);
+            for (String candidate : ifNoneMatch.split(",")) {
+                String trimmed = candidate.trim();
+                if ("*".equals(trimmed) || opaque.equals(opaqueTag(trimmed))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            try {
+                long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return lastModified / 1000 * 1000 <= since;
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    protected static String formatHttpDate(long epochMillis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(epochMillis).atZone(ZoneOffset.UTC));
+    }
+
     protected static boolean shouldUseCompression(HttpExchange exchange) {
         List<String> encodingHeaders = exchange.getRequestHeaders().get("Accept-Encoding");
         if (encodingHeaders == null){
@@ -103,6 +377,13 @@ public class HttpServer {
         return false;
     }
 
+    /**
+     * Sample names of the metrics the built-in HTTP server records about itself.
+     */
+    public static Set<String> metricNames() {
+        return HttpMetrics.names();
+    }
+
     protected static Set<String> parseQuery(String query) throws IOException {
         Set<String> names = new HashSet<String>();
         if (query != null) {
@@ -160,22 +441,180 @@ public class HttpServer {
      * The {@code httpServer} is expected to already be bound to an address
      */
     public HttpServer(com.sun.net.httpserver.HttpServer httpServer, String contextPath, CollectorRegistry registry, boolean daemon) throws IOException {
+        this(httpServer, contextPath, new HttpMetricHandler(registry),
+                Executors.newFixedThreadPool(5, NamedDaemonThreadFactory.defaultThreadFactory(daemon)), daemon);
+    }
+
+    /**
+     * Start a HTTP server serving Prometheus metrics from the given registry, configured by the given client options.
+     * When the render cache is enabled, the metrics whose sample names match {@code versionedNames} are rendered again
+     * only after {@code renderVersion} changes, all other metrics are rendered on every request.
+     */
+    public HttpServer(ExporterClientOptions clientOptions, CollectorRegistry registry, LongSupplier renderVersion,
+                      Predicate<String> versionedNames) throws IOException {
+        this(clientOptions, registry, renderVersion, versionedNames, newExecutor(clientOptions, false));
+    }
+
+    /**
+     * Start a HTTP server serving Prometheus metrics from the given registry, configured by the given client options,
+     * running request handlers on the given executor.
+     */
+    public HttpServer(ExporterClientOptions clientOptions, CollectorRegistry registry, LongSupplier renderVersion,
+                      Predicate<String> versionedNames, ExecutorService executorService) throws IOException {
+        this(createServer(clientOptions), clientOptions.getRequestUri(),
+                new HttpMetricHandler(registry,
+                        clientOptions.isRenderCacheEnabled()
+                                ? new ExpositionCache(registry, renderVersion, versionedNames, clientOptions.getCompressionLevel()) : null,
+                        clientOptions.getCompressionLevel(), clientOptions.getCompressionMinSize(), clientOptions.isKeepAliveEnabled(),
+                        clientOptions.isStreamingEnabled(), clientOptions.getStreamBufferSize()),
+                executorService, false);
+    }
+
+    private HttpServer(com.sun.net.httpserver.HttpServer httpServer, String contextPath, HttpMetricHandler mHandler,
+                       ExecutorService executorService, boolean daemon) throws IOException {
         if (httpServer.getAddress() == null){
             throw new IllegalArgumentException("HttpServer hasn't been bound to an address");
         }
 
         server = httpServer;
-        HttpHandler mHandler = new HttpMetricHandler(registry);
+        HttpMetrics.registerTo(mHandler.registry);
         if(contextPath != null && !"".equals(contextPath.trim())){
             server.createContext(contextPath.trim(), mHandler);
         }
         server.createContext("/metrics", mHandler);
         server.createContext("/-/healthy", mHandler);
-        executorService = Executors.newFixedThreadPool(5, NamedDaemonThreadFactory.defaultThreadFactory(daemon));
+        this.executorService = executorService;
         server.setExecutor(executorService);
         start(daemon);
     }
 
+    /**
+     * Creates the underlying server with the configured listen backlog.
+     * <p>
+     * {@code idleTimeout} and {@code maxIdleConnections} are best-effort. The JDK server reads its idle settings from the
+     * {@code sun.net.httpserver.idleInterval} and {@code sun.net.httpserver.maxIdleConnections} system properties once,
+     * when the first JDK server of the JVM is created, and applies them to every JDK server in the process. The
+     * properties are set around the creation of the first server of this class, only when the application has not
+     * set them itself, and cleared again right after. A warning is logged when the configured values cannot apply:
+     * the application set the properties to other values, or an earlier server of this class loaded other values.
+     * A JDK server created elsewhere in the JVM before this one cannot be detected, its values apply silently.
+     */
+    private static com.sun.net.httpserver.HttpServer createServer(ExporterClientOptions clientOptions) throws IOException {
+        String idleInterval = String.valueOf(Math.max(1L, clientOptions.getIdleTimeout() / 1000));
+        String maxIdleConnections = String.valueOf(clientOptions.getMaxIdleConnections());
+        String configured = idleInterval + "/" + maxIdleConnections;
+        InetSocketAddress address = new InetSocketAddress(clientOptions.getClientPort());
+        synchronized (IDLE_SETTINGS) {
+            String applied = IDLE_SETTINGS.get();
+            if (applied != null) {
+                if (!applied.equals(configured)) {
+                    LOGGER.warn("HttpServer idleTimeout and maxIdleConnections are not applied, the JDK http server of this JVM "
+                            + "already uses idleInterval/maxIdleConnections {} loaded by an earlier server", applied);
+                }
+                return com.sun.net.httpserver.HttpServer.create(address, clientOptions.getBacklog());
+            }
+            boolean idleIntervalSet = setIfAbsent(IDLE_INTERVAL_PROPERTY, idleInterval);
+            boolean maxIdleConnectionsSet = setIfAbsent(MAX_IDLE_CONNECTIONS_PROPERTY, maxIdleConnections);
+            applied = System.getProperty(IDLE_INTERVAL_PROPERTY, idleInterval) + "/" + System.getProperty(MAX_IDLE_CONNECTIONS_PROPERTY, maxIdleConnections);
+            try {
+                com.sun.net.httpserver.HttpServer server = com.sun.net.httpserver.HttpServer.create(address, clientOptions.getBacklog());
+                IDLE_SETTINGS.set(applied);
+                if (!applied.equals(configured)) {
+                    LOGGER.warn("HttpServer idleTimeout and maxIdleConnections are not applied, the application set the system properties "
+                            + "{} and {}, idleInterval/maxIdleConnections {} apply", IDLE_INTERVAL_PROPERTY, MAX_IDLE_CONNECTIONS_PROPERTY, applied);
+                }
+                return server;
+            } finally {
+                if (idleIntervalSet) {
+                    System.clearProperty(IDLE_INTERVAL_PROPERTY);
+                }
+                if (maxIdleConnectionsSet) {
+                    System.clearProperty(MAX_IDLE_CONNECTIONS_PROPERTY);
+                }
+            }
+        }
+    }
+
+    private static boolean setIfAbsent(String key, String value) {
+        synchronized (System.getProperties()) {
+            if (System.getProperty(key) != null) {
+                return false;
+            }
+            System.setProperty(key, value);
+            return true;
+        }
+    }
+
+    /**
+     * Creates the request executor: {@code httpThreads} workers with a bounded queue of {@code httpQueueSize} requests.
+     * When the queue is full the request is answered with 503 instead of being run on the selector thread.
+     */
+    private static ExecutorService newExecutor(ExporterClientOptions clientOptions, boolean daemon) {
+        return new BoundedExecutor(clientOptions.getHttpThreads(), clientOptions.getHttpQueueSize(), daemon);
+    }
+
+    /**
+     * Request executor with a bounded queue. A request that finds the queue full is handed to a single shedding
+     * thread, which reads the request line and headers and answers 503 with {@code Retry-After} without rendering,
+     * so an overloaded exporter stays responsive and the selector thread keeps accepting connections.
+     * When the shedding thread is backed up as well the 503 is answered inline on the calling dispatcher thread:
+     * the JDK server neither answers nor closes a connection whose exchange the executor rejects, and answering
+     * costs only reading the request head, never rendering.
+     */
+    static final class BoundedExecutor extends ThreadPoolExecutor {
+        private static final ThreadLocal<Boolean> SHEDDING = new ThreadLocal<Boolean>();
+
+        private final ThreadPoolExecutor shedder;
+
+        BoundedExecutor(int threads, int queueSize, boolean daemon) {
+            super(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(queueSize),
+                    NamedDaemonThreadFactory.defaultThreadFactory(daemon));
+            this.shedder = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(queueSize),
+                    NamedDaemonThreadFactory.defaultThreadFactory(daemon), new ThreadPoolExecutor.AbortPolicy());
+            setRejectedExecutionHandler(new RejectedExecutionHandler() {
+                @Override
+                public void rejectedExecution(final Runnable r, ThreadPoolExecutor executor) {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("HttpServer executor has been shut down");
+                    }
+                    Runnable shed = new Runnable() {
+                        @Override
+                        public void run() {
+                            shed(r);
+                        }
+                    };
+                    try {
+                        shedder.execute(shed);
+                    } catch (RejectedExecutionException e) {
+                        shed(r);
+                    }
+                }
+            });
+        }
+
+        private static void shed(Runnable exchange) {
+            SHEDDING.set(Boolean.TRUE);
+            try {
+                exchange.run();
+            } finally {
+                SHEDDING.remove();
+            }
+        }
+
+        /**
+         * Whether the current thread is answering a request rejected by a full queue.
+         */
+        static boolean isShedding() {
+            return SHEDDING.get() != null;
+        }
+
+        @Override
+        protected void terminated() {
+            shedder.shutdown();
+            super.terminated();
+        }
+    }
+
     /**
      * Start a HTTP server serving Prometheus metrics from the given registry.
      */
@@ -0,0 +1,108 @@
+package com.zkyne.business.collector;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @className: CircuitBreakerTest
+ * @description: CircuitBreaker熔断、试探、退避与恢复的状态转换测试
+ * @author: zkyne
+ * @date: 2026/10/18 23:50
+ * @see <a href=""></a>
+ */
+class CircuitBreakerTest {
+
+    @Test
+    void staysClosedBelowThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 1000, 8000);
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        assertFalse(breaker.isOpen(0));
+        assertTrue(breaker.allowRequest(0));
+        breaker.onSuccess();
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        assertFalse(breaker.isOpen(0));
+    }
+
+    @Test
+    void opensAtThresholdUntilBreakDurationElapses() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 1000, 8000);
+        breaker.onFailure(0);
+        breaker.onFailure(100);
+        assertTrue(breaker.isOpen(100));
+        assertFalse(breaker.allowRequest(100));
+        assertFalse(breaker.allowRequest(1099));
+        assertFalse(breaker.isOpen(1100));
+    }
+
+    @Test
+    void allowsSingleTrialAfterBreak() {
+        CircuitBreaker breaker = tripped(1000, 8000);
+        assertTrue(breaker.allowRequest(1000));
+        assertFalse(breaker.allowRequest(1000));
+        assertFalse(breaker.allowRequest(5000));
+    }
+
+    @Test
+    void closesAfterSuccessfulTrial() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 1000, 8000);
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        assertTrue(breaker.allowRequest(1000));
+        breaker.onSuccess();
+        assertFalse(breaker.isOpen(1000));
+        assertTrue(breaker.allowRequest(1000));
+        assertTrue(breaker.allowRequest(1000));
+        breaker.onFailure(1000);
+        assertFalse(breaker.isOpen(1000));
+    }
+
+    @Test
+    void doublesBreakDurationAfterFailedTrialsUpToMax() {
+        CircuitBreaker breaker = tripped(1000, 3000);
+        long now = 1000;
+        long[] expected = {2000, 3000, 3000};
+        for (long duration : expected) {
+            assertTrue(breaker.allowRequest(now));
+            breaker.onFailure(now);
+            assertTrue(breaker.isOpen(now + duration - 1));
+            assertFalse(breaker.allowRequest(now + duration - 1));
+            assertFalse(breaker.isOpen(now + duration));
+            now += duration;
+        }
+    }
+
+    @Test
+    void restartsBackoffAfterRecovery() {
+        CircuitBreaker breaker = tripped(1000, 8000);
+        assertTrue(breaker.allowRequest(1000));
+        breaker.onFailure(1000);
+        assertTrue(breaker.allowRequest(3000));
+        breaker.onSuccess();
+        breaker.onFailure(3000);
+        assertTrue(breaker.isOpen(3999));
+        assertFalse(breaker.isOpen(4000));
+    }
+
+    @Test
+    void neverOpensWithoutThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker(0, 0, 0);
+        for (int i = 0; i < 100; i++) {
+            breaker.onFailure(0);
+        }
+        assertFalse(breaker.isOpen(0));
+        assertTrue(breaker.allowRequest(0));
+    }
+
+    /**
+     * 阈值为1并在0时刻失败一次,熔断到breakDuration
+     */
+    private static CircuitBreaker tripped(long breakDuration, long maxBreakDuration) {
+        CircuitBreaker breaker = new CircuitBreaker(1, breakDuration, maxBreakDuration);
+        breaker.onFailure(0);
+        return breaker;
+    }
+}
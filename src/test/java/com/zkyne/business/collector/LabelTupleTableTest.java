@@ -0,0 +1,72 @@
+package com.zkyne.business.collector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @className: LabelTupleTableTest
+ * @description: LabelTupleTable查找、扩容、条目数限制与聚合值的测试
+ * @author: zkyne
+ * @date: 2026/10/18 23:40
+ * @see <a href=""></a>
+ */
+class LabelTupleTableTest {
+
+    @Test
+    void findsSameEntryForEqualTuples() {
+        LabelTupleTable table = new LabelTupleTable();
+        List<String> first = Arrays.asList("east", "web");
+        int index = table.indexOf(first, 0);
+        assertEquals(index, table.indexOf(new ArrayList<>(first), 0));
+        assertSame(first, table.tuple(index));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void keepsEntriesAndOrderAcrossGrowth() {
+        LabelTupleTable table = new LabelTupleTable();
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, table.indexOf(tuple(i), 0));
+            table.add(i, i);
+        }
+        assertEquals(10000, table.size());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, table.indexOf(tuple(i), 0));
+            assertEquals(tuple(i), table.tuple(i));
+            assertEquals((double) i, table.sums[i]);
+        }
+    }
+
+    @Test
+    void rejectsNewTuplesBeyondLimit() {
+        LabelTupleTable table = new LabelTupleTable();
+        assertEquals(0, table.indexOf(tuple(0), 2));
+        assertEquals(1, table.indexOf(tuple(1), 2));
+        assertEquals(-1, table.indexOf(tuple(2), 2));
+        assertEquals(1, table.indexOf(tuple(1), 2));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    void aggregatesSumMinMaxAndCount() {
+        LabelTupleTable table = new LabelTupleTable();
+        int index = table.indexOf(tuple(0), 0);
+        table.add(index, 3);
+        table.add(index, -2);
+        table.add(index, 7);
+        assertEquals(8D, table.sums[index]);
+        assertEquals(-2D, table.mins[index]);
+        assertEquals(7D, table.maxs[index]);
+        assertEquals(3L, table.counts[index]);
+    }
+
+    private static List<String> tuple(int i) {
+        return Arrays.asList("region_" + (i % 97), "channel_" + (i / 97));
+    }
+}
@@ -0,0 +1,103 @@
+package com.zkyne.business.collector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @className: QuantileSketchTest
+ * @description: QuantileSketch分位值相对误差与桶数上限的测试
+ * @author: zkyne
+ * @date: 2026/10/18 23:30
+ * @see <a href=""></a>
+ */
+class QuantileSketchTest {
+
+    private static final double ACCURACY = 0.01D;
+
+    private static final double[] QUANTILES = {0.0D, 0.01D, 0.25D, 0.5D, 0.75D, 0.9D, 0.99D, 0.999D, 1.0D};
+
+    @Test
+    void emptySketchReturnsNaN() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        assertEquals(0L, sketch.count());
+        assertTrue(Double.isNaN(sketch.quantile(0.5D)));
+    }
+
+    @Test
+    void ignoresNaN() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        sketch.add(Double.NaN);
+        sketch.add(2.0D);
+        assertEquals(1L, sketch.count());
+        assertWithinAccuracy(2.0D, sketch.quantile(0.5D));
+    }
+
+    @Test
+    void quantilesStayWithinRelativeAccuracy() {
+        Random random = new Random(42L);
+        double[] values = new double[100000];
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(random.nextGaussian() * 3);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, sketch.count());
+        for (double quantile : QUANTILES) {
+            assertWithinAccuracy(values[(int) (quantile * (values.length - 1))], sketch.quantile(quantile));
+        }
+    }
+
+    @Test
+    void handlesNegativeZeroAndPositiveValues() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        double[] values = new double[2001];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i - 1000;
+            sketch.add(values[i]);
+        }
+        for (double quantile : QUANTILES) {
+            double expected = values[(int) (quantile * (values.length - 1))];
+            if(expected == 0){
+                assertEquals(0.0D, sketch.quantile(quantile));
+            }else{
+                assertWithinAccuracy(expected, sketch.quantile(quantile));
+            }
+        }
+    }
+
+    @Test
+    void collapsesLowestBinsAndKeepsHighQuantilesAccurate() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY, 64);
+        for (int i = 1; i <= 1000000; i++) {
+            sketch.add(i);
+        }
+        assertEquals(1000000L, sketch.count());
+        assertWithinAccuracy(500000D, sketch.quantile(0.5D));
+        assertWithinAccuracy(990000D, sketch.quantile(0.99D));
+        assertWithinAccuracy(1000000D, sketch.quantile(1.0D));
+        double collapsed = sketch.quantile(0.0001D);
+        assertTrue(collapsed > 100D && collapsed < 500000D, "collapsed low quantile " + collapsed);
+    }
+
+    @Test
+    void growsDownwardWithoutCollapsingWithinMaxBins() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY, 1024);
+        for (int i = 1000000; i >= 1; i--) {
+            sketch.add(i);
+        }
+        assertWithinAccuracy(1D, sketch.quantile(0.0D));
+        assertWithinAccuracy(100D, sketch.quantile(0.0000995D));
+        assertWithinAccuracy(500000D, sketch.quantile(0.5D));
+    }
+
+    private static void assertWithinAccuracy(double expected, double actual) {
+        assertTrue(Math.abs(actual - expected) <= ACCURACY * Math.abs(expected) * 1.0001D,
+                "expected " + expected + " within " + ACCURACY + " but was " + actual);
+    }
+}
@@ -0,0 +1,150 @@
+package com.zkyne.business.collector;
+
+import com.zkyne.business.collector.ScrapeConfigSync.ScrapeJob;
+import com.zkyne.business.config.ExporterConfigOptions.MetricConfigOptions;
+import com.zkyne.business.config.ExporterConfigOptions.PrometheusOptions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @className: ScrapeConfigSyncTest
+ * @description: ScrapeConfigSync时间长度解析、取整与采集job划分的测试
+ * @author: zkyne
+ * @date: 2026/10/19 00:05
+ * @see <a href=""></a>
+ */
+class ScrapeConfigSyncTest {
+
+    private static final long MAX_STALENESS = TimeUnit.SECONDS.toMillis(30);
+
+    @Test
+    void parsesDurations() {
+        assertEquals(500L, ScrapeConfigSync.parseDuration("500ms"));
+        assertEquals(15000L, ScrapeConfigSync.parseDuration("15s"));
+        assertEquals(60000L, ScrapeConfigSync.parseDuration(" 1m "));
+        assertEquals(5400000L, ScrapeConfigSync.parseDuration("1h30m"));
+        assertEquals(TimeUnit.DAYS.toMillis(8), ScrapeConfigSync.parseDuration("1w1d"));
+        assertEquals(TimeUnit.DAYS.toMillis(365), ScrapeConfigSync.parseDuration("1y"));
+    }
+
+    @Test
+    void rejectsInvalidDurations() {
+        for (String duration : Arrays.asList(null, "", " ", "15", "s", "1x", "1m 30s", "m1", "1m30", "0s")) {
+            assertThrows(IllegalArgumentException.class, () -> ScrapeConfigSync.parseDuration(duration), String.valueOf(duration));
+        }
+    }
+
+    @Test
+    void formatsDurations() {
+        assertEquals("2h", ScrapeConfigSync.formatDuration(TimeUnit.HOURS.toMillis(2)));
+        assertEquals("2m", ScrapeConfigSync.formatDuration(TimeUnit.MINUTES.toMillis(2)));
+        assertEquals("90s", ScrapeConfigSync.formatDuration(TimeUnit.SECONDS.toMillis(90)));
+        assertEquals("1500ms", ScrapeConfigSync.formatDuration(1500L));
+        assertEquals(1500L, ScrapeConfigSync.parseDuration(ScrapeConfigSync.formatDuration(1500L)));
+    }
+
+    @Test
+    void roundsUpToSteps() {
+        assertEquals(1000L, ScrapeConfigSync.roundUp(1L));
+        assertEquals(2000L, ScrapeConfigSync.roundUp(1001L));
+        assertEquals(20000L, ScrapeConfigSync.roundUp(16000L));
+        assertEquals(TimeUnit.MINUTES.toMillis(10), ScrapeConfigSync.roundUp(TimeUnit.MINUTES.toMillis(9)));
+        assertEquals(TimeUnit.HOURS.toMillis(2), ScrapeConfigSync.roundUp(TimeUnit.HOURS.toMillis(1) + 1000L));
+    }
+
+    @Test
+    void rejectsTimeoutGreaterThanInterval() {
+        assertThrows(IllegalArgumentException.class, () -> sync(PrometheusOptions.builder().scrapeInterval("10s").scrapeTimeout("15s")));
+    }
+
+    @Test
+    void keepsSingleJobWhenSplitDisabled() {
+        ScrapeConfigSync sync = sync(PrometheusOptions.builder().jobName("biz"));
+        List<ScrapeJob> jobs = sync.plan(Arrays.asList(refreshed("slow", TimeUnit.MINUTES.toMillis(10)), onDemand("expensive", 20000L)), MAX_STALENESS, false);
+        assertEquals(1, jobs.size());
+        assertJob(jobs.get(0), "biz", "1m", "15s");
+        assertNull(jobs.get(0).names);
+    }
+
+    @Test
+    void keepsSingleJobWhenEveryMetricFits() {
+        ScrapeConfigSync sync = sync(PrometheusOptions.builder().jobName("biz").splitJobsEnabled(true));
+        List<ScrapeJob> jobs = sync.plan(Arrays.asList(refreshed("fast", 30000L), onDemand("cheap", 1000L)), MAX_STALENESS, false);
+        assertEquals(1, jobs.size());
+        assertJob(jobs.get(0), "biz", "1m", "15s");
+        assertNull(jobs.get(0).names);
+    }
+
+    @Test
+    void capsIntervalOfSlowMetrics() {
+        ScrapeConfigSync sync = sync(PrometheusOptions.builder().jobName("biz").splitJobsEnabled(true));
+        List<ScrapeJob> jobs = sync.plan(Arrays.asList(refreshed("fast", 30000L),
+                refreshed("hourly", TimeUnit.HOURS.toMillis(1)), refreshed("slow", TimeUnit.MINUTES.toMillis(10))), MAX_STALENESS, false);
+        assertEquals(2, jobs.size());
+        assertJob(jobs.get(0), "biz", "1m", "15s");
+        assertEquals(new LinkedHashSet<>(Arrays.asList("fast", "exporter_up")), jobs.get(0).names);
+        assertJob(jobs.get(1), "biz-2m-15s", "2m", "15s");
+        assertEquals(new LinkedHashSet<>(Arrays.asList("hourly", "slow")), jobs.get(1).names);
+    }
+
+    @Test
+    void keepsConfiguredIntervalAboveCap() {
+        ScrapeConfigSync sync = sync(PrometheusOptions.builder().jobName("biz").scrapeInterval("5m").splitJobsEnabled(true));
+        List<ScrapeJob> jobs = sync.plan(Collections.singletonList(refreshed("slow", TimeUnit.MINUTES.toMillis(10))), MAX_STALENESS, false);
+        assertEquals(1, jobs.size());
+        assertJob(jobs.get(0), "biz", "5m", "15s");
+    }
+
+    @Test
+    void splitsMetricsExceedingTimeout() {
+        ScrapeConfigSync sync = sync(PrometheusOptions.builder().jobName("biz").splitJobsEnabled(true));
+        List<ScrapeJob> jobs = sync.plan(Arrays.asList(onDemand("cheap", 1000L), onDemand("expensive", 20000L)), MAX_STALENESS, false);
+        assertEquals(2, jobs.size());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("cheap", "exporter_up")), jobs.get(0).names);
+        assertJob(jobs.get(1), "biz-1m-30s", "1m", "30s");
+        assertEquals(Collections.singleton("expensive"), jobs.get(1).names);
+    }
+
+    @Test
+    void splitsMostExpensiveMetricsWhenTotalExceedsTimeout() {
+        ScrapeConfigSync sync = sync(PrometheusOptions.builder().jobName("biz").splitJobsEnabled(true));
+        List<MetricContext> metrics = Arrays.asList(onDemand("a", 4000L), onDemand("b", 5000L), onDemand("c", 6000L));
+        assertEquals(1, sync.plan(metrics, MAX_STALENESS, true).size());
+        List<ScrapeJob> jobs = sync.plan(metrics, MAX_STALENESS, false);
+        assertEquals(2, jobs.size());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("b", "a", "exporter_up")), jobs.get(0).names);
+        assertJob(jobs.get(1), "biz-1m-15s", "1m", "15s");
+        assertEquals(Collections.singleton("c"), jobs.get(1).names);
+    }
+
+    private static void assertJob(ScrapeJob job, String jobName, String scrapeInterval, String scrapeTimeout) {
+        assertEquals(jobName, job.jobName);
+        assertEquals(scrapeInterval, job.scrapeInterval);
+        assertEquals(scrapeTimeout, job.scrapeTimeout);
+    }
+
+    private static ScrapeConfigSync sync(PrometheusOptions.Builder prometheus) {
+        return new ScrapeConfigSync(prometheus.build(), Paths.get("target"), Collections.singletonList("localhost:9090"),
+                "/metrics", Collections.singleton("exporter_up"));
+    }
+
+    private static MetricContext refreshed(String name, long refreshInterval) {
+        return new MetricContext(MetricConfigOptions.builder().name(name).excuteSql("select 1").refreshInterval(refreshInterval).build(), null, null, 0);
+    }
+
+    private static MetricContext onDemand(String name, long costMillis) {
+        MetricContext metricContext = new MetricContext(MetricConfigOptions.builder().name(name).excuteSql("select 1").build(), null, null, 0);
+        metricContext.observeCost(TimeUnit.MILLISECONDS.toNanos(costMillis));
+        return metricContext;
+    }
+}
@@ -0,0 +1,128 @@
+package com.zkyne.business.collector;
+
+import io.prometheus.client.Collector.MetricFamilySamples.Sample;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @className: SeriesTableTest
+ * @description: SeriesTable刷新、复用与失败刷新的测试
+ * @author: zkyne
+ * @date: 2026/10/18 23:10
+ * @see <a href=""></a>
+ */
+class SeriesTableTest {
+
+    private final SeriesTable table = new SeriesTable("orders", Collections.singletonList("region"));
+
+    @Test
+    void reusesPublishedListWhenNothingChanges() {
+        List<Sample> first = refresh("a", 1, "b", 2);
+        List<Sample> second = refresh("a", 1, "b", 2);
+        assertSame(first, second);
+        assertEquals(Arrays.asList("a", "b"), regions(second));
+    }
+
+    @Test
+    void republishesWhenValueChanges() {
+        List<Sample> first = refresh("a", 1, "b", 2);
+        List<Sample> second = refresh("a", 1, "b", 3);
+        assertEquals(3D, second.get(1).value);
+        assertSame(first.get(0), second.get(0));
+    }
+
+    @Test
+    void dropsSeriesMissingFromRefresh() {
+        refresh("a", 1, "b", 2);
+        assertEquals(Collections.singletonList("b"), regions(refresh("b", 2)));
+    }
+
+    @Test
+    void swapsSeriesOfEqualCount() {
+        refresh("b", 1);
+        assertEquals(Collections.singletonList("a"), regions(refresh("a", 1)));
+        assertEquals(Collections.singletonList("b"), regions(refresh("b", 1)));
+    }
+
+    @Test
+    void failedRefreshDoesNotHideReappearingSeries() {
+        refresh("b", 1);
+        assertEquals(Collections.singletonList("a"), regions(refresh("a", 1)));
+        assertTrue(this.table.tryAcquire());
+        this.table.update(Collections.singletonList("b"), 1);
+        this.table.release();
+        List<Sample> samples = refresh("b", 1);
+        assertEquals(Collections.singletonList("b"), regions(samples));
+        assertEquals(1D, samples.get(0).value);
+    }
+
+    @Test
+    void failedRefreshKeepsPublishedValues() {
+        refresh("a", 1);
+        assertTrue(this.table.tryAcquire());
+        this.table.update(Collections.singletonList("a"), 5);
+        this.table.release();
+        List<Sample> samples = refresh("a", 1);
+        assertEquals(1D, samples.get(0).value);
+    }
+
+    @Test
+    void rejectsDuplicateWithinRefresh() {
+        assertTrue(this.table.tryAcquire());
+        assertTrue(this.table.update(Collections.singletonList("a"), 1));
+        assertFalse(this.table.update(Collections.singletonList("a"), 2));
+        assertEquals(1D, this.table.publish().get(0).value);
+    }
+
+    @Test
+    void onlyOneRefreshAtATime() {
+        assertTrue(this.table.tryAcquire());
+        assertFalse(this.table.tryAcquire());
+        this.table.publish();
+        assertTrue(this.table.tryAcquire());
+        this.table.release();
+    }
+
+    @Test
+    void compactsExpiredSeriesAndKeepsOrder() {
+        Object[] many = new Object[200];
+        for (int i = 0; i < 100; i++) {
+            many[i * 2] = "r" + i;
+            many[i * 2 + 1] = i;
+        }
+        assertEquals(100, refresh(many).size());
+        List<Sample> samples = refresh("r99", 99, "r3", 3, "new", 7);
+        assertEquals(Arrays.asList("r3", "r99", "new"), regions(samples));
+        samples = refresh("r3", 3, "r99", 99, "new", 7, "r50", 50);
+        assertEquals(Arrays.asList("r3", "r99", "new", "r50"), regions(samples));
+        assertEquals(50D, samples.get(3).value);
+    }
+
+    /**
+     * 以region与指标值交替排列的参数执行一次成功的刷新
+     */
+    private List<Sample> refresh(Object... regionValues) {
+        assertTrue(this.table.tryAcquire());
+        for (int i = 0; i < regionValues.length; i += 2) {
+            assertTrue(this.table.update(Collections.singletonList((String) regionValues[i]), ((Number) regionValues[i + 1]).doubleValue()));
+        }
+        return this.table.publish();
+    }
+
+    private static List<String> regions(List<Sample> samples) {
+        List<String> regions = new ArrayList<>();
+        for (Sample sample : samples) {
+            regions.add(sample.labelValues.get(0));
+        }
+        return regions;
+    }
+}
@@ -0,0 +1,116 @@
+package com.zkyne.business.collector;
+
+import com.zkyne.business.config.ExporterConfigOptions.MetricConfigOptions;
+import io.prometheus.client.Collector.MetricFamilySamples;
+import io.prometheus.client.Collector.MetricFamilySamples.Sample;
+import io.prometheus.client.Collector.Type;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @className: SnapshotStoreTest
+ * @description: SnapshotStore写入与读取快照的测试
+ * @author: zkyne
+ * @date: 2026/10/18 23:40
+ * @see <a href=""></a>
+ */
+class SnapshotStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsSnapshots() throws IOException {
+        Path file = this.dir.resolve("nested").resolve("snapshot.bin");
+        SnapshotStore store = new SnapshotStore(file);
+        MetricContext orders = context("orders");
+        orders.snapshot = new MetricSnapshot(new MetricFamilySamples("orders", Type.GAUGE, "订单数", Arrays.asList(
+                new Sample("orders", Arrays.asList("region", "channel"), Arrays.asList("east", "app"), 12.5),
+                new Sample("orders", Arrays.asList("region", "channel"), Arrays.asList("west", "web"), -3),
+                new Sample("orders", Collections.emptyList(), Collections.emptyList(), Double.NaN))), 1700000000123L);
+        MetricContext users = context("users");
+        users.snapshot = new MetricSnapshot(new MetricFamilySamples("users", Type.COUNTER, "用户数", Collections.singletonList(
+                new Sample("users_total", Collections.singletonList("region"), Collections.singletonList("east"), 7))), 42L);
+        store.save(Arrays.asList(orders, users));
+
+        Map<String, MetricSnapshot> loaded = store.load();
+        assertEquals(2, loaded.size());
+        assertSnapshot(orders.snapshot, loaded.get("orders"));
+        assertSnapshot(users.snapshot, loaded.get("users"));
+        assertFalse(Files.exists(file.resolveSibling("snapshot.bin.tmp")));
+    }
+
+    @Test
+    void skipsMetricsWithoutData() throws IOException {
+        SnapshotStore store = new SnapshotStore(this.dir.resolve("snapshot.bin"));
+        MetricContext empty = context("empty");
+        empty.snapshot = new MetricSnapshot(null, 1L);
+        store.save(Arrays.asList(context("never"), empty));
+        assertTrue(store.load().isEmpty());
+    }
+
+    @Test
+    void overwritesPreviousSnapshot() throws IOException {
+        SnapshotStore store = new SnapshotStore(this.dir.resolve("snapshot.bin"));
+        MetricContext orders = context("orders");
+        orders.snapshot = new MetricSnapshot(familySamples("orders", 1), 1L);
+        store.save(Collections.singletonList(orders));
+        orders.snapshot = new MetricSnapshot(familySamples("orders", 2), 2L);
+        store.save(Collections.singletonList(orders));
+        MetricSnapshot loaded = store.load().get("orders");
+        assertEquals(2L, loaded.collectTime);
+        assertEquals(2D, loaded.familySamples.samples.get(0).value);
+    }
+
+    @Test
+    void returnsNothingWithoutFile() throws IOException {
+        assertTrue(new SnapshotStore(this.dir.resolve("missing.bin")).load().isEmpty());
+    }
+
+    @Test
+    void rejectsUnrecognizedFile() throws IOException {
+        Path file = this.dir.resolve("snapshot.bin");
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> new SnapshotStore(file).load());
+    }
+
+    private static void assertSnapshot(MetricSnapshot expected, MetricSnapshot actual) {
+        assertEquals(expected.collectTime, actual.collectTime);
+        assertTrue(actual.restored);
+        assertFalse(actual.isFresh(actual.collectTime, Long.MAX_VALUE));
+        assertEquals(expected.familySamples.type, actual.familySamples.type);
+        assertEquals(expected.familySamples.help, actual.familySamples.help);
+        List<Sample> expectedSamples = expected.familySamples.samples;
+        List<Sample> actualSamples = actual.familySamples.samples;
+        assertEquals(expectedSamples.size(), actualSamples.size());
+        for (int i = 0; i < expectedSamples.size(); i++) {
+            assertEquals(expectedSamples.get(i).name, actualSamples.get(i).name);
+            assertEquals(expectedSamples.get(i).labelNames, actualSamples.get(i).labelNames);
+            assertEquals(expectedSamples.get(i).labelValues, actualSamples.get(i).labelValues);
+            assertEquals(expectedSamples.get(i).value, actualSamples.get(i).value);
+        }
+    }
+
+    private static MetricFamilySamples familySamples(String name, double value) {
+        return new MetricFamilySamples(name, Type.GAUGE, name, Collections.singletonList(
+                new Sample(name, Collections.emptyList(), Collections.emptyList(), value)));
+    }
+
+    private static MetricContext context(String name) {
+        MetricConfigOptions config = MetricConfigOptions.builder().name(name).help(name).excuteSql("select 1").build();
+        return new MetricContext(config, null, null, 0);
+    }
+}
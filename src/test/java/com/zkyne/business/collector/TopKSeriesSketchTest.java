@@ -0,0 +1,104 @@
+package com.zkyne.business.collector;
+
+import io.prometheus.client.Collector.MetricFamilySamples;
+import io.prometheus.client.Collector.MetricFamilySamples.Sample;
+import io.prometheus.client.Collector.Type;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @className: TopKSeriesSketchTest
+ * @description: TopKSeriesSketch按绝对值保留序列与limit截断的测试
+ * @author: zkyne
+ * @date: 2026/10/18 23:20
+ * @see <a href=""></a>
+ */
+class TopKSeriesSketchTest {
+
+    private static final List<String> TAG_KEYS = Collections.singletonList("region");
+
+    @Test
+    void keepsAllSeriesWithinCapacity() {
+        TopKSeriesSketch sketch = new TopKSeriesSketch(3);
+        sketch.add(tag("a"), 1);
+        sketch.add(tag("b"), 2);
+        assertEquals(0L, sketch.evictions());
+        List<Sample> samples = sketch.samples("orders", TAG_KEYS);
+        assertEquals(Arrays.asList("a", "b"), regions(samples));
+    }
+
+    @Test
+    void keepsLargestMagnitudesAndMergesTheRestIntoOther() {
+        TopKSeriesSketch sketch = new TopKSeriesSketch(2);
+        sketch.add(tag("a"), 1);
+        sketch.add(tag("b"), -10);
+        sketch.add(tag("c"), 5);
+        sketch.add(tag("d"), 2);
+        assertEquals(2L, sketch.evictions());
+        assertTrue(sketch.contains(tag("b")));
+        assertTrue(sketch.contains(tag("c")));
+        assertFalse(sketch.contains(tag("a")));
+        List<Sample> samples = sketch.samples("orders", TAG_KEYS);
+        assertEquals(Arrays.asList("b", "c", TopKSeriesSketch.OTHER_TAG_VALUE), regions(samples));
+        assertEquals(3D, samples.get(2).value);
+    }
+
+    @Test
+    void prefersEarlierSeriesOnEqualMagnitude() {
+        TopKSeriesSketch sketch = new TopKSeriesSketch(1);
+        sketch.add(tag("a"), 3);
+        sketch.add(tag("b"), -3);
+        assertTrue(sketch.contains(tag("a")));
+        assertEquals(-3D, sketch.samples("orders", TAG_KEYS).get(1).value);
+    }
+
+    @Test
+    void limitReturnsSameFamilyWhenWithinBudget() {
+        MetricFamilySamples familySamples = family(1, 2, 3);
+        assertSame(familySamples, TopKSeriesSketch.limit(familySamples, 3));
+    }
+
+    @Test
+    void limitDropsFamilyWithoutBudget() {
+        assertNull(TopKSeriesSketch.limit(family(1, 2), 0));
+    }
+
+    @Test
+    void limitKeepsLargestAndFoldsExistingOther() {
+        List<Sample> samples = new ArrayList<>(family(4, -9, 1, 6).samples);
+        samples.add(new Sample("orders", TAG_KEYS, tag(TopKSeriesSketch.OTHER_TAG_VALUE), 100));
+        MetricFamilySamples limited = TopKSeriesSketch.limit(new MetricFamilySamples("orders", Type.GAUGE, "help", samples), 3);
+        assertEquals(Arrays.asList("r1", "r3", TopKSeriesSketch.OTHER_TAG_VALUE), regions(limited.samples));
+        assertEquals(105D, limited.samples.get(2).value);
+    }
+
+    private static MetricFamilySamples family(double... values) {
+        List<Sample> samples = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            samples.add(new Sample("orders", TAG_KEYS, tag("r" + i), values[i]));
+        }
+        return new MetricFamilySamples("orders", Type.GAUGE, "help", samples);
+    }
+
+    private static List<String> tag(String region) {
+        return Collections.singletonList(region);
+    }
+
+    private static List<String> regions(List<Sample> samples) {
+        List<String> regions = new ArrayList<>();
+        for (Sample sample : samples) {
+            regions.add(sample.labelValues.get(0));
+        }
+        return regions;
+    }
+}